@@ -0,0 +1,48 @@
+package id.flutter.plugins;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dithers a whole 576x2000 photo row by row, the way {@code ImageRasterizer} feeds scanlines.
+ * A curve other than the identity keeps the threshold run off the {@code EscPosRaster} fast
+ * path, so every algorithm pays for the lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DitherBenchmark {
+    private static final int WIDTH = Receipts.WIDTH_BYTES * 8;
+
+    @Param({ Dither.THRESHOLD, Dither.FLOYD_STEINBERG, Dither.ATKINSON, Dither.ORDERED })
+    public String algorithm;
+
+    @Param({ "1.0", "1.8" })
+    public double gamma;
+
+    private int[] argb;
+    private byte[] out;
+
+    @Setup
+    public void setup() {
+        argb = Receipts.photo();
+        out = new byte[Receipts.WIDTH_BYTES * Receipts.HEIGHT];
+    }
+
+    @Benchmark
+    public byte[] dither() {
+        final Dither dither = new Dither(algorithm, WIDTH, gamma, 1.2);
+        for (int y = 0; y < Receipts.HEIGHT; y++) {
+            dither.packRow(argb, y * WIDTH, out, y * Receipts.WIDTH_BYTES);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,111 @@
+package id.flutter.plugins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A port 9100 stand-in on the loopback interface: prints at {@code bytesPerSecond} out of a
+ * small receive buffer, so TCP flow control pushes back on the sender like a real printer
+ * does, and answers {@code DLE EOT n} right away.
+ */
+final class LocalTcpPrinter {
+    private static final byte STATUS_OK = 0x12;
+
+    private final long bytesPerSecond;
+    private final ServerSocket server;
+    private final Semaphore firstBytes = new Semaphore(0);
+
+    LocalTcpPrinter(long bytesPerSecond, int bufferSize) throws IOException {
+        this.bytesPerSecond = bytesPerSecond;
+        this.server = new ServerSocket();
+        server.setReceiveBufferSize(bufferSize);
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+        final Thread acceptor = new Thread(this::accept, "tcp-printer");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    String address() {
+        return TcpTransport.SCHEME + "127.0.0.1:" + server.getLocalPort();
+    }
+
+    /** Forgets the first bytes of earlier connections. */
+    void resetFirstByte() {
+        firstBytes.drainPermits();
+    }
+
+    /** Blocks until a connection received its first byte. */
+    void awaitFirstByte() throws InterruptedException {
+        if (!firstBytes.tryAcquire(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("no byte arrived");
+        }
+    }
+
+    void close() throws IOException {
+        server.close();
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                final Socket socket = server.accept();
+                final Thread thread = new Thread(() -> serve(socket), "tcp-printer-connection");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } catch (IOException e) {
+            // closed
+        }
+    }
+
+    private void serve(Socket socket) {
+        final byte[] buffer = new byte[1024];
+        int matched = 0;
+        boolean first = true;
+        try {
+            final InputStream in = socket.getInputStream();
+            final OutputStream out = socket.getOutputStream();
+            int count;
+            while ((count = in.read(buffer)) >= 0) {
+                if (first && count > 0) {
+                    first = false;
+                    firstBytes.release();
+                }
+
+                for (int i = 0; i < count; i++) {
+                    final byte b = buffer[i];
+                    if (matched == 2) {
+                        matched = 0;
+                        if (b >= 1 && b <= 4) {
+                            out.write(STATUS_OK);
+                            out.flush();
+                        }
+                    } else if (matched == 1 && b == 0x04) {
+                        matched = 2;
+                    } else {
+                        matched = b == 0x10 ? 1 : 0;
+                    }
+                }
+
+                // printing what was just read, the socket buffer fills up meanwhile
+                LockSupport.parkNanos(count * 1000000000L / bytesPerSecond);
+            }
+        } catch (IOException e) {
+            // connection dropped
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
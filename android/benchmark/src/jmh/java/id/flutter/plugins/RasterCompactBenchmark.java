@@ -0,0 +1,97 @@
+package id.flutter.plugins;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plain {@code GS v 0}, byte for byte what {@code Generator._imageRaster} sends, against the
+ * compact strips and blank-row feeds. Encoding is far below a millisecond either way, the
+ * sizes are printed at tear down.
+ *
+ * The print benchmarks send each encoding through a {@link ChunkedWriter} into a
+ * {@link SimulatedPrinter} at the ~10 KB/s of an SPP link and stop once the last byte left the
+ * printer's buffer, which is what the transfer costs end to end. A receipt is several seconds
+ * on the wire, so they are single shots.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RasterCompactBenchmark {
+    private static final String ADDRESS = "00:11:22:33:44:55";
+    private static final long LINK_BYTES_PER_SECOND = 10000;
+    private static final int PRINTER_BUFFER = 4096;
+    private static final long LINK_LATENCY_MS = 20;
+    private static final int CHUNK_SIZE = 512;
+
+    @Param({ "text", "sparse", "logo" })
+    public String corpus;
+
+    private byte[] bits;
+    private byte[] out;
+    private SimulatedPrinter.Link link;
+
+    @Setup
+    public void setup() throws IOException {
+        bits = Receipts.corpus(corpus);
+        out = new byte[RasterCompactor.maxSize(Receipts.WIDTH_BYTES, Receipts.HEIGHT)];
+        link = new SimulatedPrinter(LINK_BYTES_PER_SECOND, PRINTER_BUFFER, LINK_LATENCY_MS, 0).connect(ADDRESS);
+    }
+
+    @TearDown
+    public void report() {
+        final int plain = plain();
+        final int compact = compact();
+        System.out.printf("%n%s: plain %d bytes, compact %d bytes, %.1f%% saved%n",
+                corpus, plain, compact, 100.0 * (plain - compact) / plain);
+        link.close();
+    }
+
+    @Benchmark
+    public int plain() {
+        final int offset = EscPosRaster.writeHeader(EscPosRaster.MODE_RASTER, out, 0, Receipts.WIDTH_BYTES,
+                Receipts.HEIGHT);
+        System.arraycopy(bits, 0, out, offset, bits.length);
+        return offset + bits.length;
+    }
+
+    @Benchmark
+    public int compact() {
+        return RasterCompactor.compact(bits, 0, Receipts.WIDTH_BYTES, Receipts.HEIGHT,
+                RasterCompactor.DEFAULT_DPI, out, 0);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public void printPlain() throws Exception {
+        print(plain());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public void printCompact() throws Exception {
+        print(compact());
+    }
+
+    private void print(int length) throws Exception {
+        new ChunkedWriter(link.getOutputStream(), CHUNK_SIZE, 0).write(out, 0, length, null);
+        link.awaitPrinted();
+    }
+}
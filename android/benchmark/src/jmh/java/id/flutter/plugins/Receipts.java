@@ -0,0 +1,99 @@
+package id.flutter.plugins;
+
+import java.util.Random;
+
+/**
+ * Synthetic 80 mm receipts (576 dots) packed 1 bit per pixel, shaped like what the plugin
+ * prints: a logo, lines of text of varying length and blank gaps between sections. Plus an
+ * ARGB photo of the same size for the dithering benchmarks and plain text jobs for the
+ * transport ones.
+ */
+final class Receipts {
+    static final int WIDTH_BYTES = 72;
+    static final int HEIGHT = 2000;
+
+    private Receipts() {
+    }
+
+    static byte[] corpus(String name) {
+        switch (name) {
+            case "text":
+                return text(0);
+            case "sparse":
+                return text(96);
+            case "logo":
+                return logo();
+            default:
+                throw new IllegalArgumentException(name);
+        }
+    }
+
+    /** Lines of 24 rows, glyphs on rows 3..20, with {@code gap} blank rows every 8 lines. */
+    private static byte[] text(int gap) {
+        final Random random = new Random(42);
+        final byte[] bits = new byte[WIDTH_BYTES * HEIGHT];
+        int y = 0;
+        int line = 0;
+        while (y + 24 <= HEIGHT) {
+            final int length = 8 + random.nextInt(WIDTH_BYTES - 8);
+            for (int row = 3; row < 21; row++) {
+                for (int x = 0; x < length; x++) {
+                    bits[(y + row) * WIDTH_BYTES + x] = (byte) random.nextInt(256);
+                }
+            }
+            y += 24;
+            if (gap > 0 && ++line % 8 == 0) {
+                y += gap;
+            }
+        }
+        return bits;
+    }
+
+    /** {@code ESC @} and 48 column text lines, {@code size} bytes of what a text receipt sends. */
+    static byte[] escPos(int size) {
+        final Random random = new Random(11);
+        final byte[] job = new byte[size];
+        job[0] = 0x1B;
+        job[1] = '@';
+        int column = 0;
+        for (int i = 2; i < size; i++) {
+            if (column++ == 48) {
+                job[i] = '\n';
+                column = 0;
+            } else {
+                job[i] = (byte) (' ' + random.nextInt(95));
+            }
+        }
+        return job;
+    }
+
+    /** Diagonal gradient with a shaded disc and some sensor noise, fully opaque. */
+    static int[] photo() {
+        final Random random = new Random(3);
+        final int width = WIDTH_BYTES * 8;
+        final int[] argb = new int[width * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < width; x++) {
+                final double dx = x - width / 2.0;
+                final double dy = (y % 600) - 300.0;
+                final double disc = Math.max(0, 1 - Math.sqrt(dx * dx + dy * dy) / 260);
+                int v = (int) (255.0 * (x + y) / (width + HEIGHT) * (1 - disc) + 40 * disc);
+                v = Math.max(0, Math.min(255, v + random.nextInt(17) - 8));
+                argb[y * width + x] = 0xFF000000 | v << 16 | v << 8 | v;
+            }
+        }
+        return argb;
+    }
+
+    /** A centered 256 dot logo on top of a text receipt. */
+    private static byte[] logo() {
+        final Random random = new Random(7);
+        final byte[] bits = text(0);
+        for (int y = 0; y < 256; y++) {
+            for (int x = 0; x < WIDTH_BYTES; x++) {
+                bits[y * WIDTH_BYTES + x] = x >= 20 && x < 52 ? (byte) random.nextInt(256) : 0;
+            }
+        }
+        return bits;
+    }
+}
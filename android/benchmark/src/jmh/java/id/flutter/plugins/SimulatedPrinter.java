@@ -0,0 +1,237 @@
+package id.flutter.plugins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An in-memory ESC/POS printer behind a throttled link, handed to the {@link ConnectionPool}
+ * as its connector.
+ *
+ * Connecting takes {@code connectMs}. The printer empties its {@code bufferSize} byte input
+ * buffer at {@code bytesPerSecond} and a write blocks while the buffer is full, which is how
+ * SPP flow control looks from the sending side. Every byte reaches the printer
+ * {@code latencyMs} after it was accepted, and {@code DLE EOT n} is answered with an
+ * online-and-ok status byte one more latency later, ahead of the buffered job like a real
+ * printer does.
+ */
+final class SimulatedPrinter implements ConnectionPool.Connector {
+    private static final byte STATUS_OK = 0x12;
+
+    private final long bytesPerSecond;
+    private final int bufferSize;
+    private final long latencyNanos;
+    private final long connectNanos;
+
+    SimulatedPrinter(long bytesPerSecond, int bufferSize, long latencyMs, long connectMs) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.bufferSize = bufferSize;
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMs);
+        this.connectNanos = TimeUnit.MILLISECONDS.toNanos(connectMs);
+    }
+
+    @Override
+    public Link connect(String address) throws IOException {
+        sleepUntil(System.nanoTime() + connectNanos);
+        return new Link(address);
+    }
+
+    final class Link implements PrinterTransport {
+        private final String address;
+        private final Object lock = new Object();
+        private final OutputStream out = new Output();
+        private final InputStream in = new Input();
+
+        // guarded by lock
+        private final ArrayDeque<long[]> answers = new ArrayDeque<>();
+        private boolean closed;
+
+        // writer thread only
+        private long buffered;
+        private long drainedAt = System.nanoTime();
+        private long firstByteAt;
+        private int matched;
+
+        Link(String address) {
+            this.address = address;
+        }
+
+        /** Blocks until the first byte written on this link reached the printer. */
+        void awaitFirstByte() {
+            if (firstByteAt == 0) {
+                throw new IllegalStateException("nothing written yet");
+            }
+            sleepUntil(firstByteAt);
+        }
+
+        /** Blocks until every byte written so far reached the printer and left its buffer. */
+        void awaitPrinted() {
+            drain();
+            sleepUntil(drainedAt + buffered * 1000000000L / bytesPerSecond + latencyNanos);
+        }
+
+        @Override
+        public String getAddress() {
+            return address;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return in;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return out;
+        }
+
+        @Override
+        public boolean isConnected() {
+            synchronized (lock) {
+                return !closed;
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (lock) {
+                closed = true;
+                lock.notifyAll();
+            }
+        }
+
+        private void accept(byte[] data, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (!isConnected()) {
+                    throw new IOException("link closed");
+                }
+
+                drain();
+                final long free = bufferSize - buffered;
+                if (free <= 0) {
+                    // wait until the smaller of the pending write and the whole buffer fits
+                    final long wanted = Math.min(length, bufferSize) - free;
+                    sleepUntil(drainedAt + wanted * 1000000000L / bytesPerSecond);
+                    continue;
+                }
+
+                final int count = (int) Math.min(length, free);
+                final long now = System.nanoTime();
+                if (firstByteAt == 0) {
+                    firstByteAt = now + latencyNanos;
+                }
+                scan(data, offset, count, now);
+                buffered += count;
+                offset += count;
+                length -= count;
+            }
+        }
+
+        private void drain() {
+            final long now = System.nanoTime();
+            final long printed = (now - drainedAt) * bytesPerSecond / 1000000000L;
+            if (printed > 0) {
+                buffered = Math.max(0, buffered - printed);
+                drainedAt = now;
+            }
+        }
+
+        // finds DLE EOT n, also when it is split across writes
+        private void scan(byte[] data, int offset, int count, long now) {
+            for (int i = offset; i < offset + count; i++) {
+                final byte b = data[i];
+                if (matched == 2) {
+                    matched = 0;
+                    if (b >= 1 && b <= 4) {
+                        synchronized (lock) {
+                            answers.addLast(new long[] { now + 2 * latencyNanos, STATUS_OK });
+                            lock.notifyAll();
+                        }
+                    }
+                } else if (matched == 1 && b == 0x04) {
+                    matched = 2;
+                } else {
+                    matched = b == 0x10 ? 1 : 0;
+                }
+            }
+        }
+
+        private final class Output extends OutputStream {
+            private final byte[] single = new byte[1];
+
+            @Override
+            public void write(int b) throws IOException {
+                single[0] = (byte) b;
+                accept(single, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] data, int offset, int length) throws IOException {
+                accept(data, offset, length);
+            }
+        }
+
+        private final class Input extends InputStream {
+            @Override
+            public int read() throws IOException {
+                final byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (length == 0) {
+                    return 0;
+                }
+
+                synchronized (lock) {
+                    while (true) {
+                        if (closed) {
+                            return -1;
+                        }
+
+                        final long[] next = answers.peekFirst();
+                        final long wait = next == null ? 0 : next[0] - System.nanoTime();
+                        if (next != null && wait <= 0) {
+                            int count = 0;
+                            while (count < length && !answers.isEmpty()
+                                    && answers.peekFirst()[0] <= System.nanoTime()) {
+                                buffer[offset + count++] = (byte) answers.pollFirst()[1];
+                            }
+                            return count;
+                        }
+
+                        try {
+                            if (next == null) {
+                                lock.wait();
+                            } else {
+                                TimeUnit.NANOSECONDS.timedWait(lock, wait);
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IOException("interrupted");
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public int available() {
+                synchronized (lock) {
+                    final long[] next = answers.peekFirst();
+                    return next != null && next[0] <= System.nanoTime() ? 1 : 0;
+                }
+            }
+        }
+    }
+
+    private static void sleepUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package id.flutter.plugins;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TcpTransport} through the {@link ConnectionPool} against a {@link LocalTcpPrinter},
+ * the network counterpart of {@link TransportBenchmark}. A LAN printer drains far faster than
+ * an SPP link, the defaults model one printing at about 200 KB/s.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TcpTransportBenchmark {
+    private static final byte[] STATUS_REQUEST = { 0x10, 0x04, 1 };
+
+    @Param({ "200000" })
+    public long bytesPerSecond;
+
+    @Param({ "8192" })
+    public int bufferSize;
+
+    @Param({ "2048", "16384" })
+    public int jobBytes;
+
+    @Param({ "512" })
+    public int chunkSize;
+
+    private byte[] job;
+    private byte[] header;
+    private LocalTcpPrinter printer;
+    private String address;
+    private DeviceExecutors executors;
+    private ConnectionPool pool;
+    private BluetoothStreamReader reader;
+
+    @Setup
+    public void setup() throws IOException {
+        job = Receipts.escPos(jobBytes);
+        header = Receipts.escPos(64);
+        printer = new LocalTcpPrinter(bytesPerSecond, bufferSize);
+        address = printer.address();
+        executors = new DeviceExecutors();
+        pool = new ConnectionPool(a -> TcpTransport.connect(a, TcpTransport.DEFAULT_CONNECT_TIMEOUT_MS),
+                executors);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (reader != null) {
+            reader.stopReading();
+        }
+        pool.shutdown();
+        executors.shutdown();
+        printer.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public int pooledJob() throws Exception {
+        final PrinterTransport transport = pool.acquire(address);
+        new ChunkedWriter(transport.getOutputStream(), chunkSize, 0).write(job, null);
+        return job.length;
+    }
+
+    /** Non-blocking connect with TCP_NODELAY, then the time until the printer read a byte. */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public void connectToFirstByte() throws Exception {
+        pool.close(address);
+        printer.resetFirstByte();
+        final PrinterTransport transport = pool.acquire(address);
+        new ChunkedWriter(transport.getOutputStream(), chunkSize, 0).write(header, null);
+        printer.awaitFirstByte();
+    }
+
+    /** The reader thread blocked in a select while the writer sends the request. */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public byte[] statusRoundTrip() throws Exception {
+        final PrinterTransport transport = pool.acquire(address);
+        if (reader == null || !reader.isAttachedTo(transport)) {
+            if (reader != null) {
+                reader.stopReading();
+            }
+            reader = new BluetoothStreamReader(transport, executors, data -> { }, e -> { });
+        }
+        return reader.request(STATUS_REQUEST, BluetoothStreamReader.fixedLength(1), 2000);
+    }
+}
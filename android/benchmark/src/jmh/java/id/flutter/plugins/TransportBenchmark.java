@@ -0,0 +1,139 @@
+package id.flutter.plugins;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The plugin's write and read paths, {@link ConnectionPool}, {@link ChunkedWriter},
+ * {@link StatusMonitor} and {@link BluetoothStreamReader}, against a {@link SimulatedPrinter}.
+ * The defaults are a typical SPP link: about 11 KB/s, a 4 KB printer buffer, 20 ms each way
+ * and a 400 ms handshake; any of them can be overridden with {@code -p}.
+ *
+ * The job benchmarks are bound by the link, so they show what the plugin adds on top of it;
+ * the gc profiler enabled in build.gradle reports the allocation rate of every benchmark.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TransportBenchmark {
+    private static final String ADDRESS = "00:11:22:33:44:55";
+    private static final byte[] STATUS_REQUEST = { 0x10, 0x04, 1 };
+
+    @Param({ "11000", "100000" })
+    public long bytesPerSecond;
+
+    @Param({ "4096" })
+    public int bufferSize;
+
+    @Param({ "20" })
+    public long latencyMs;
+
+    @Param({ "400" })
+    public long connectMs;
+
+    @Param({ "2048", "16384" })
+    public int jobBytes;
+
+    @Param({ "512" })
+    public int chunkSize;
+
+    private byte[] job;
+    private byte[] header;
+    private DeviceExecutors executors;
+    private ConnectionPool pool;
+    private BluetoothStreamReader reader;
+    private volatile StatusMonitor monitor;
+
+    @Setup
+    public void setup() throws IOException {
+        job = Receipts.escPos(jobBytes);
+        header = Receipts.escPos(64);
+        executors = new DeviceExecutors();
+        pool = new ConnectionPool(new SimulatedPrinter(bytesPerSecond, bufferSize, latencyMs, connectMs),
+                executors);
+        connectReader();
+    }
+
+    @TearDown
+    public void tearDown() {
+        reader.stopReading();
+        pool.shutdown();
+        executors.shutdown();
+    }
+
+    /** A job on a pooled connection, as sent by {@code write} without status polling. */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public int pooledJob() throws Exception {
+        final PrinterTransport transport = pool.acquire(ADDRESS);
+        new ChunkedWriter(transport.getOutputStream(), chunkSize, 0).write(job, null);
+        return job.length;
+    }
+
+    /** The same with {@code DLE EOT 2} polled between chunks and answered on the reader thread. */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public int pipelinedJob() throws Exception {
+        final PrinterTransport transport = pool.acquire(ADDRESS);
+        if (!reader.isAttachedTo(transport)) {
+            connectReader();
+        }
+
+        final StatusMonitor current = new StatusMonitor(StatusMonitor.DEFAULT_POLL_INTERVAL_MS,
+                StatusMonitor.DEFAULT_MAX_PAUSE_MS, (paused, reason, status) -> { });
+        monitor = current;
+        try {
+            new ChunkedWriter(transport.getOutputStream(), chunkSize, 0, current).write(job, null);
+            current.finish(transport.getOutputStream());
+        } finally {
+            monitor = null;
+        }
+        return job.length;
+    }
+
+    /** A cold job: handshake, then the time until the printer received the first byte. */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public void connectToFirstByte() throws Exception {
+        pool.close(ADDRESS);
+        final SimulatedPrinter.Link link = (SimulatedPrinter.Link) pool.acquire(ADDRESS);
+        new ChunkedWriter(link.getOutputStream(), chunkSize, 0).write(header, null);
+        link.awaitFirstByte();
+    }
+
+    /** {@code readStatus}: {@code DLE EOT 1} and its answer through the reader thread. */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public byte[] statusRoundTrip() throws Exception {
+        final PrinterTransport transport = pool.acquire(ADDRESS);
+        if (!reader.isAttachedTo(transport)) {
+            connectReader();
+        }
+        return reader.request(STATUS_REQUEST, BluetoothStreamReader.fixedLength(1), 2000);
+    }
+
+    private void connectReader() throws IOException {
+        if (reader != null) {
+            reader.stopReading();
+        }
+
+        reader = new BluetoothStreamReader(pool.acquire(ADDRESS), executors,
+                data -> {
+                    final StatusMonitor current = monitor;
+                    if (current != null) {
+                        current.onBytes(data, data.length);
+                    }
+                },
+                e -> { });
+        reader.startReading();
+    }
+}
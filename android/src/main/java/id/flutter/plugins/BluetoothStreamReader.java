@@ -1,23 +1,44 @@
-package android.src.main.java.id.flutter.plugins;
+package id.flutter.plugins;
 
-import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothSocket;
-import android.util.Log;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.UUID;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Reads a {@link PrinterTransport} on a thread of the bounded reader pool of
+ * {@link DeviceExecutors}. Plain Java, so it runs the same against the in-memory printer of the
+ * JVM benchmarks; failures are reported to the {@link ErrorCallback} instead of being logged.
+ *
+ * The socket belongs to the caller and is never closed here. The read thread only runs while
+ * reading was started or a {@link #request} waits for its answer; a read already blocked on the
+ * socket returns with the next bytes or when the socket closes, the thread ends after that.
+ * It is not interrupted, that would close an NIO channel.
+ */
 public class BluetoothStreamReader {
-    private static final UUID SERIAL_UUID = UUID.fromString("00001101-0000-1000-8000-00805f9b34fb");
-    private final BluetoothDevice device;
+    // unclaimed bytes kept for the next frame request, older ones are dropped
+    private static final int MAX_PENDING = 1024;
+
+    private final String address;
+    private final DeviceExecutors executors;
     private final DataReceivedCallback dataCallback;
     private final ErrorCallback errorCallback;
-    private BluetoothSocket socket;
-    private InputStream inputStream;
-    private boolean isReading;
+    private final Object lock = new Object();
+    private final PrinterTransport socket;
+    private volatile boolean isReading;
+    // guarded by this, the pool thread running readLoop
     private Thread readingThread;
+    private boolean readerRunning;
+    private volatile boolean closed;
+
+    // guarded by lock
+    private final byte[] pending = new byte[MAX_PENDING];
+    private int pendingLength;
+    private FrameMatcher waiter;
+    private byte[] frame;
+    private IOException failure;
 
     public interface DataReceivedCallback {
         void onDataReceived(byte[] data);
@@ -27,137 +48,232 @@ public class BluetoothStreamReader {
         void onError(Exception e);
     }
 
-    public BluetoothStreamReader(BluetoothDevice device,
-                                 DataReceivedCallback dataCallback,
-                                 ErrorCallback errorCallback) {
-        this.device = device;
+    /**
+     * Decides whether the bytes received so far hold a complete response.
+     */
+    public interface FrameMatcher {
+        /**
+         * @return the length of the complete frame at the start of {@code buffer}, or 0 while
+         *         more bytes are needed
+         */
+        int match(byte[] buffer, int length);
+    }
+
+    /** Completes once {@code size} bytes arrived, e.g. 1 for a {@code DLE EOT n} status byte. */
+    public static FrameMatcher fixedLength(int size) {
+        return (buffer, length) -> length >= size ? size : 0;
+    }
+
+    /** Reads from an already connected socket, which is left open by {@link #stopReading()}. */
+    BluetoothStreamReader(PrinterTransport socket, DeviceExecutors executors,
+                          DataReceivedCallback dataCallback,
+                          ErrorCallback errorCallback) {
+        this.address = socket.getAddress();
+        this.executors = executors;
+        this.socket = socket;
         this.dataCallback = dataCallback;
         this.errorCallback = errorCallback;
     }
 
+    boolean isAttachedTo(PrinterTransport socket) {
+        return this.socket == socket;
+    }
+
+    /** True once the read loop ended because the socket was closed or failed. */
+    boolean isClosed() {
+        return closed;
+    }
+
     public void startReading() {
         if (isReading) return;
 
         isReading = true;
-        readingThread = new Thread(() -> {
-            try {
-                // Create and connect socket
-                socket = device.createRfcommSocketToServiceRecord(SERIAL_UUID);
-                socket.connect();
-                inputStream = socket.getInputStream();
-
-                byte[] buffer = new byte[1024];
-                int bytes;
-
-                while (isReading) {
-                    try {
-                        bytes = inputStream.read(buffer);
-                        if (bytes > 0) {
-                            byte[] data = new byte[bytes];
-                            System.arraycopy(buffer, 0, data, 0, bytes);
-                            dataCallback.onDataReceived(data);
-                        }
-                    } catch (IOException e) {
-                        Log.e("BluetoothStreamReader", "Error reading stream", e);
-                        errorCallback.onError(e);
-                        stopReading();
-                    }
-                }
-            } catch (Exception e) {
-                Log.e("BluetoothStreamReader", "Connection failed", e);
-                errorCallback.onError(e);
-                stopReading();
-            }
-        });
-        readingThread.start();
+        try {
+            ensureReadingThread(false);
+        } catch (IOException e) {
+            isReading = false;
+            errorCallback.onError(e);
+        }
     }
 
+    /** The read thread ends once its current read returns, unless a request still waits. */
     public void stopReading() {
         isReading = false;
-        if (readingThread != null) {
-            readingThread.interrupt();
-            readingThread = null;
+    }
+
+    /**
+     * Sends {@code command} (if any) and blocks until {@code matcher} reports a complete frame
+     * or {@code timeout} ms passed. Bytes left over from earlier exchanges are discarded before
+     * a command is sent so they can't be mistaken for its answer.
+     *
+     * @return the frame, or null when the deadline passed
+     */
+    public byte[] request(byte[] command, FrameMatcher matcher, long timeout)
+            throws IOException, InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        synchronized (lock) {
+            if (waiter != null) {
+                throw new IllegalStateException("another read is already pending");
+            }
+            if (command != null) {
+                pendingLength = 0;
+            }
+
+            final byte[] buffered = takeFrame(matcher);
+            if (buffered != null) {
+                return buffered;
+            }
+            waiter = matcher;
+            frame = null;
+            failure = null;
         }
 
         try {
-            if (inputStream != null) {
-                inputStream.close();
-                inputStream = null;
+            ensureReadingThread(command != null);
+            if (command != null) {
+                final OutputStream out = socket.getOutputStream();
+                out.write(command);
+                out.flush();
+            }
+
+            synchronized (lock) {
+                long remaining;
+                while (frame == null && failure == null && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                }
+
+                if (frame != null) {
+                    return frame;
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                return null;
+            }
+        } finally {
+            synchronized (lock) {
+                waiter = null;
+                frame = null;
+            }
+        }
+    }
+
+    private synchronized void ensureReadingThread(boolean discardUnread) throws IOException {
+        if (readerRunning) {
+            return;
+        }
+
+        if (discardUnread) {
+            // bytes that arrived while nobody was reading, e.g. a late answer to a timed out request
+            final InputStream in = socket.getInputStream();
+            int available;
+            while ((available = in.available()) > 0) {
+                in.skip(available);
             }
-        } catch (IOException e) {
-            Log.e("BluetoothStreamReader", "Error closing input stream", e);
         }
 
         try {
-            if (socket != null) {
-                socket.close();
-                socket = null;
+            executors.executeReader(this::readLoop);
+        } catch (RejectedExecutionException e) {
+            throw new IOException("no reader thread left for " + address);
+        }
+        readerRunning = true;
+    }
+
+    // ends the loop under the monitor ensureReadingThread checks, so a new request starts another
+    private synchronized boolean keepReading() {
+        synchronized (lock) {
+            if (isReading || waiter != null) {
+                return true;
             }
-        } catch (IOException e) {
-            Log.e("BluetoothStreamReader", "Error closing socket", e);
         }
+        readingThread = null;
+        readerRunning = false;
+        return false;
     }
 
-    public void readOnce(ReadOnceCallback callback, long timeout) {
-        new Thread(() -> {
-            BluetoothSocket tempSocket = null;
-            InputStream tempInputStream = null;
-
-            try {
-                // Create and connect socket
-                tempSocket = device.createRfcommSocketToServiceRecord(SERIAL_UUID);
-                tempSocket.connect();
-                tempInputStream = tempSocket.getInputStream();
-
-                byte[] buffer = new byte[1024];
-                long startTime = System.currentTimeMillis();
-                boolean dataReceived = false;
-
-                while (System.currentTimeMillis() - startTime < timeout && !dataReceived) {
-                    int available = tempInputStream.available();
-                    if (available > 0) {
-                        int bytes = tempInputStream.read(buffer);
-                        if (bytes > 0) {
-                            byte[] data = new byte[bytes];
-                            System.arraycopy(buffer, 0, data, 0, bytes);
-                            callback.onComplete(data);
-                            dataReceived = true;
-                        }
-                    }
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
+    private void readLoop() {
+        synchronized (this) {
+            readingThread = Thread.currentThread();
+        }
+        final ReceiveBuffer receive = ReceiveBuffer.obtain();
+        final ReceiveBuffer.Sink sink = this::onBytes;
+        try {
+            final InputStream in = socket.getInputStream();
+            while (keepReading()) {
+                receive.read(in, sink);
+            }
+        } catch (IOException e) {
+            closed = true;
+            synchronized (lock) {
+                failure = e;
+                lock.notifyAll();
+            }
 
-                if (!dataReceived) {
-                    callback.onComplete(null);
-                }
-            } catch (Exception e) {
-                Log.e("BluetoothStreamReader", "Error in readOnce", e);
-                callback.onComplete(null);
-            } finally {
-                try {
-                    if (tempInputStream != null) {
-                        tempInputStream.close();
-                    }
-                } catch (IOException e) {
-                    Log.e("BluetoothStreamReader", "Error closing input stream", e);
+            if (isReading) {
+                isReading = false;
+                errorCallback.onError(e);
+            }
+        } finally {
+            receive.release();
+            synchronized (this) {
+                // a loop that ended in keepReading may already have been replaced
+                if (readingThread == Thread.currentThread()) {
+                    readingThread = null;
+                    readerRunning = false;
                 }
+            }
+        }
+    }
 
-                try {
-                    if (tempSocket != null) {
-                        tempSocket.close();
+    private void onBytes(byte[] buffer, int count) {
+        synchronized (lock) {
+            if (waiter != null || !isReading) {
+                append(buffer, count);
+                if (waiter != null) {
+                    frame = takeFrame(waiter);
+                    if (frame != null) {
+                        lock.notifyAll();
                     }
-                } catch (IOException e) {
-                    Log.e("BluetoothStreamReader", "Error closing socket", e);
                 }
+                return;
             }
-        }).start();
+        }
+
+        dataCallback.onDataReceived(Arrays.copyOf(buffer, count));
+    }
+
+    // called with lock held
+    private void append(byte[] buffer, int count) {
+        if (count >= MAX_PENDING) {
+            System.arraycopy(buffer, count - MAX_PENDING, pending, 0, MAX_PENDING);
+            pendingLength = MAX_PENDING;
+            return;
+        }
+
+        final int overflow = pendingLength + count - MAX_PENDING;
+        if (overflow > 0) {
+            System.arraycopy(pending, overflow, pending, 0, pendingLength - overflow);
+            pendingLength -= overflow;
+        }
+        System.arraycopy(buffer, 0, pending, pendingLength, count);
+        pendingLength += count;
     }
 
-    public interface ReadOnceCallback {
-        void onComplete(byte[] data);
+    // called with lock held
+    private byte[] takeFrame(FrameMatcher matcher) {
+        if (pendingLength == 0) {
+            return null;
+        }
+
+        final int length = Math.min(matcher.match(pending, pendingLength), pendingLength);
+        if (length <= 0) {
+            return null;
+        }
+
+        final byte[] result = Arrays.copyOf(pending, length);
+        System.arraycopy(pending, length, pending, 0, pendingLength - length);
+        pendingLength -= length;
+        return result;
     }
 }
@@ -0,0 +1,41 @@
+package id.flutter.plugins;
+
+import android.bluetooth.BluetoothSocket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/** A connected RFCOMM socket. */
+class BluetoothTransport implements PrinterTransport {
+    private final BluetoothSocket socket;
+
+    BluetoothTransport(BluetoothSocket socket) {
+        this.socket = socket;
+    }
+
+    @Override
+    public String getAddress() {
+        return socket.getRemoteDevice().getAddress();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return socket.getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return socket.getOutputStream();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return socket.isConnected();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
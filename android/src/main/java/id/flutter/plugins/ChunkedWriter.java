@@ -0,0 +1,89 @@
+package id.flutter.plugins;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a payload to the printer in slices of at most {@code chunkSize} bytes.
+ *
+ * By default chunks go out back to back, paced only by the link's own flow control blocking
+ * {@link OutputStream#write} and by the {@link ChunkGate}, which holds chunks back while the
+ * printer reports it can't print. A positive {@code delayTime} is an explicit request for a
+ * minimum pace, for printers that overflow their input buffer: every chunk then owns a slot of
+ * {@code delayTime} ms and the writer only sleeps for whatever is left of that slot, so a link
+ * that is already slower than the requested pace is never slowed down further.
+ */
+class ChunkedWriter {
+    interface ProgressListener {
+        void onProgress(int total, int sent);
+    }
+
+    /** Runs before every chunk, may write to the stream itself or hold the chunk back. */
+    interface ChunkGate {
+        void beforeChunk(OutputStream out) throws IOException, InterruptedException;
+    }
+
+    private final OutputStream out;
+    private final int chunkSize;
+    private final long intervalNanos;
+    private final ChunkGate gate;
+    private long flushNanos;
+
+    ChunkedWriter(OutputStream out, int chunkSize, long delayTimeMs) {
+        this(out, chunkSize, delayTimeMs, null);
+    }
+
+    ChunkedWriter(OutputStream out, int chunkSize, long delayTimeMs, ChunkGate gate) {
+        this.out = out;
+        this.chunkSize = chunkSize;
+        this.intervalNanos = Math.max(0, delayTimeMs) * 1000000L;
+        this.gate = gate;
+    }
+
+    /** Time spent in {@link OutputStream#flush} over every write so far. */
+    long flushNanos() {
+        return flushNanos;
+    }
+
+    void write(byte[] data, ProgressListener listener) throws IOException, InterruptedException {
+        write(data, 0, data.length, listener);
+    }
+
+    void write(byte[] data, int offset, int length, ProgressListener listener)
+            throws IOException, InterruptedException {
+        final int slice = chunkSize > 0 ? chunkSize : Math.max(1, length);
+
+        if (listener != null) {
+            listener.onProgress(length, 0);
+        }
+
+        int sent = 0;
+        long deadline = System.nanoTime();
+        while (sent < length) {
+            final int count = Math.min(slice, length - sent);
+            if (gate != null) {
+                gate.beforeChunk(out);
+            }
+            out.write(data, offset + sent, count);
+            final long flushStart = System.nanoTime();
+            out.flush();
+            flushNanos += System.nanoTime() - flushStart;
+            sent += count;
+
+            if (listener != null) {
+                listener.onProgress(length, sent);
+            }
+
+            if (sent < length && intervalNanos > 0) {
+                deadline += intervalNanos;
+                final long remaining = deadline - System.nanoTime();
+                if (remaining > 0) {
+                    Thread.sleep(remaining / 1000000L, (int) (remaining % 1000000L));
+                } else {
+                    // the link is slower than the requested pace, don't let the debt pile up
+                    deadline = System.nanoTime();
+                }
+            }
+        }
+    }
+}
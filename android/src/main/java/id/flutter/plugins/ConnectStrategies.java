@@ -0,0 +1,221 @@
+package id.flutter.plugins;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Opens printer sockets for the {@link ConnectionPool}.
+ *
+ * In {@link #AUTO} mode the strategy that last worked for the address is tried first, then the
+ * others in {@link #FALLBACK_ORDER}. The winner is persisted so the next connect, even after a
+ * restart, goes straight to it. A printer that does not answer the page at all (switched off or
+ * out of range) fails on the first attempt, the other socket types can't reach it either. The
+ * bond is kept unless {@link #UNPAIR} is asked for explicitly.
+ */
+class ConnectStrategies implements ConnectionPool.Connector {
+    static final String AUTO = "auto";
+    /** RFCOMM by service record, keeps the existing bond. */
+    static final String SECURE = "secure";
+    /** Same without authentication, for printers that drop encrypted links. */
+    static final String INSECURE = "insecure";
+    /** Hidden {@code createRfcommSocket(1)}, for printers with a broken SDP record. */
+    static final String CHANNEL_1 = "channel1";
+    /** Removes the bond before a secure connect, the plugin's historical behaviour. */
+    static final String UNPAIR = "unpair";
+
+    private static final String[] FALLBACK_ORDER = { SECURE, INSECURE, CHANNEL_1 };
+    private static final UUID SERIAL_UUID = UUID.fromString("00001101-0000-1000-8000-00805f9b34fb");
+
+    private final BluetoothAdapter adapter;
+    private final SharedPreferences preferences;
+    // guarded by this
+    private final Map<String, String> modes = new HashMap<>();
+    private final Map<String, List<Map<String, Object>>> attempts = new HashMap<>();
+
+    ConnectStrategies(BluetoothAdapter adapter, SharedPreferences preferences) {
+        this.adapter = adapter;
+        this.preferences = preferences;
+    }
+
+    static boolean isValid(String mode) {
+        return AUTO.equals(mode) || SECURE.equals(mode) || INSECURE.equals(mode)
+                || CHANNEL_1.equals(mode) || UNPAIR.equals(mode);
+    }
+
+    /** Mode used by the next connects to {@code address}. */
+    synchronized void setMode(String address, String mode) {
+        if (!isValid(mode)) {
+            throw new IllegalArgumentException("unknown connect strategy " + mode);
+        }
+        modes.put(address, mode);
+    }
+
+    /** Strategy that succeeded last for {@code address}, or null. */
+    String remembered(String address) {
+        return preferences.getString(address, null);
+    }
+
+    /** Every attempt of the last connect to {@code address}. */
+    synchronized List<Map<String, Object>> lastAttempts(String address) {
+        final List<Map<String, Object>> list = attempts.get(address);
+        return list == null ? new ArrayList<>() : new ArrayList<>(list);
+    }
+
+    @Override
+    public PrinterTransport connect(String address) throws IOException {
+        final String mode;
+        synchronized (this) {
+            final String configured = modes.get(address);
+            mode = configured == null ? AUTO : configured;
+        }
+
+        final List<String> order = new ArrayList<>();
+        if (AUTO.equals(mode)) {
+            final String last = remembered(address);
+            if (last != null && isValid(last)) {
+                order.add(last);
+            }
+            for (String strategy : FALLBACK_ORDER) {
+                if (!order.contains(strategy)) {
+                    order.add(strategy);
+                }
+            }
+        } else {
+            order.add(mode);
+        }
+
+        cancelDiscovery();
+        final BluetoothDevice device = adapter.getRemoteDevice(address);
+        final List<Map<String, Object>> tried = new ArrayList<>();
+        IOException failure = null;
+        try {
+            for (String strategy : order) {
+                final long start = SystemClock.elapsedRealtime();
+                final Map<String, Object> attempt = new HashMap<>();
+                attempt.put("strategy", strategy);
+                tried.add(attempt);
+                try {
+                    final BluetoothSocket socket = open(device, strategy);
+                    attempt.put("latencyMs", SystemClock.elapsedRealtime() - start);
+                    attempt.put("success", true);
+                    if (!strategy.equals(remembered(address))) {
+                        preferences.edit().putString(address, strategy).apply();
+                    }
+                    return new BluetoothTransport(socket);
+                } catch (IOException e) {
+                    attempt.put("latencyMs", SystemClock.elapsedRealtime() - start);
+                    attempt.put("success", false);
+                    attempt.put("error", e.getMessage());
+                    failure = e;
+                    if (isUnreachable(e)) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            synchronized (this) {
+                attempts.put(address, tried);
+            }
+        }
+
+        throw failure;
+    }
+
+    // an inquiry in progress slows the page down and can make it time out
+    private void cancelDiscovery() {
+        try {
+            if (adapter.isDiscovering()) {
+                adapter.cancelDiscovery();
+            }
+        } catch (SecurityException e) {
+            // no scan permission, discovery can't be running on our behalf either
+        }
+    }
+
+    private static boolean isUnreachable(IOException e) {
+        final String message = e.getMessage();
+        if (message == null) {
+            return false;
+        }
+
+        // "read failed, socket might closed or timeout" is what a rejected socket type reports,
+        // only the errors of the page itself mean nobody answered
+        final String lower = message.toLowerCase(Locale.US);
+        return lower.contains("host is down") || lower.contains("connection timed out")
+                || lower.contains("page timeout") || lower.contains("no route to host");
+    }
+
+    private static BluetoothSocket open(BluetoothDevice device, String strategy) throws IOException {
+        final BluetoothSocket socket;
+        switch (strategy) {
+            case INSECURE:
+                socket = device.createInsecureRfcommSocketToServiceRecord(SERIAL_UUID);
+                break;
+            case CHANNEL_1:
+                try {
+                    Method method = device.getClass().getMethod("createRfcommSocket", int.class);
+                    socket = (BluetoothSocket) method.invoke(device, 1);
+                } catch (Exception e) {
+                    throw new IOException("channel 1 socket unavailable: " + e.getMessage());
+                }
+                break;
+            case UNPAIR:
+                removeBond(device);
+                socket = device.createRfcommSocketToServiceRecord(SERIAL_UUID);
+                break;
+            default:
+                socket = device.createRfcommSocketToServiceRecord(SERIAL_UUID);
+                break;
+        }
+
+        try {
+            socket.connect();
+        } catch (IOException e) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+            throw e;
+        }
+        return socket;
+    }
+
+    private static void removeBond(BluetoothDevice device) throws IOException {
+        if (device.getBondState() != BluetoothDevice.BOND_BONDED) {
+            return;
+        }
+
+        try {
+            Method removeBondMethod = device.getClass().getMethod("removeBond");
+            Boolean success = (Boolean) removeBondMethod.invoke(device);
+            if (success == null || !success) {
+                throw new IOException("Failed to unpair device");
+            }
+
+            // Wait for unpairing to complete
+            int retries = 0;
+            while (device.getBondState() == BluetoothDevice.BOND_BONDED && retries++ < 10) {
+                Thread.sleep(200);
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while unpairing");
+        } catch (Exception e) {
+            throw new IOException("Failed to unpair device: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package id.flutter.plugins;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps printer sockets open between jobs.
+ *
+ * The pool is bounded to {@code maxSize} sockets (the least recently used unpinned one is closed
+ * first, so pinned sockets may take it past its size), closes sockets that stayed idle longer
+ * than {@code idleTimeoutMs} and probes the remaining ones in the background, reconnecting those
+ * that died while idle so the next job does not pay for the handshake. All socket work is routed
+ * through the printer's serial executor so probes and evictions never race with a job on the same
+ * socket.
+ */
+class ConnectionPool {
+    static final int DEFAULT_MAX_SIZE = 4;
+    static final long DEFAULT_IDLE_TIMEOUT_MS = 5 * 60 * 1000;
+    static final long PROBE_INTERVAL_MS = 30 * 1000;
+
+    interface Connector {
+        PrinterTransport connect(String address) throws IOException;
+    }
+
+    private static class Entry {
+        final PrinterTransport socket;
+        long lastUsed;
+
+        Entry(PrinterTransport socket) {
+            this.socket = socket;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    private final Connector connector;
+    private final DeviceExecutors executors;
+    private final int maxSize;
+    private final long idleTimeoutMs;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> pinned = new HashSet<>();
+    private final ScheduledExecutorService prober = Executors.newSingleThreadScheduledExecutor();
+
+    private long hits;
+    private long misses;
+    private long reconnects;
+    private long retries;
+    private long probeFailures;
+    private long idleEvictions;
+    private long sizeEvictions;
+
+    ConnectionPool(Connector connector, DeviceExecutors executors) {
+        this(connector, executors, DEFAULT_MAX_SIZE, DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    ConnectionPool(Connector connector, DeviceExecutors executors, int maxSize, long idleTimeoutMs) {
+        this.connector = connector;
+        this.executors = executors;
+        this.maxSize = maxSize;
+        this.idleTimeoutMs = idleTimeoutMs;
+        prober.scheduleWithFixedDelay(this::probeAll, PROBE_INTERVAL_MS, PROBE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized boolean contains(String address) {
+        return entries.containsKey(address);
+    }
+
+    /** Pinned sockets are never closed for being idle or to make room. */
+    synchronized void pin(String address) {
+        pinned.add(address);
+    }
+
+    synchronized void unpin(String address) {
+        pinned.remove(address);
+    }
+
+    synchronized boolean isPinned(String address) {
+        return pinned.contains(address);
+    }
+
+    /** Closes the socket after a job that did not ask to keep it, unless it is pinned. */
+    void release(String address) {
+        if (!isPinned(address)) {
+            close(address);
+        }
+    }
+
+    /**
+     * Returns the pooled socket for {@code address}, connecting a new one on a miss. Must be
+     * called on the printer's serial executor.
+     */
+    PrinterTransport acquire(String address) throws IOException {
+        synchronized (this) {
+            final Entry entry = entries.get(address);
+            if (entry != null) {
+                hits++;
+                entry.lastUsed = System.currentTimeMillis();
+                return entry.socket;
+            }
+            misses++;
+        }
+
+        final PrinterTransport socket = connector.connect(address);
+        put(address, socket);
+        return socket;
+    }
+
+    /**
+     * Drops a socket that failed mid job and counts the retry the caller is about to make.
+     */
+    void invalidateForRetry(String address) {
+        close(address);
+        synchronized (this) {
+            retries++;
+        }
+    }
+
+    void close(String address) {
+        final Entry entry;
+        synchronized (this) {
+            entry = entries.remove(address);
+        }
+
+        if (entry != null) {
+            closeQuietly(entry.socket);
+        }
+    }
+
+    synchronized Map<String, Object> stats() {
+        final Map<String, Object> data = new HashMap<>();
+        data.put("size", entries.size());
+        data.put("maxSize", maxSize);
+        data.put("hits", hits);
+        data.put("misses", misses);
+        data.put("reconnects", reconnects);
+        data.put("retries", retries);
+        data.put("probeFailures", probeFailures);
+        data.put("idleEvictions", idleEvictions);
+        data.put("sizeEvictions", sizeEvictions);
+        data.put("addresses", new ArrayList<>(entries.keySet()));
+        data.put("pinned", new ArrayList<>(pinned));
+        return data;
+    }
+
+    void shutdown() {
+        prober.shutdownNow();
+        final List<Entry> closing;
+        synchronized (this) {
+            closing = new ArrayList<>(entries.values());
+            entries.clear();
+        }
+
+        for (Entry entry : closing) {
+            closeQuietly(entry.socket);
+        }
+    }
+
+    private void put(String address, PrinterTransport socket) {
+        final List<String> evicted = new ArrayList<>();
+        synchronized (this) {
+            final Entry previous = entries.put(address, new Entry(socket));
+            if (previous != null && previous.socket != socket) {
+                closeQuietly(previous.socket);
+            }
+
+            // access ordered, so the first keys are the least recently used
+            for (String key : entries.keySet()) {
+                if (entries.size() - evicted.size() <= maxSize) {
+                    break;
+                }
+                if (!key.equals(address) && !pinned.contains(key)) {
+                    evicted.add(key);
+                }
+            }
+            sizeEvictions += evicted.size();
+        }
+
+        for (String key : evicted) {
+            executors.execute(key, () -> close(key));
+        }
+    }
+
+    private void probeAll() {
+        final List<String> addresses;
+        synchronized (this) {
+            addresses = new ArrayList<>(entries.keySet());
+        }
+
+        for (String address : addresses) {
+            executors.execute(address, () -> probe(address));
+        }
+    }
+
+    // runs on the printer's serial executor
+    private void probe(String address) {
+        final Entry entry;
+        synchronized (this) {
+            // plain get() would count as an access and reorder the LRU
+            entry = peek(address);
+            if (entry == null) {
+                return;
+            }
+
+            if (!pinned.contains(address) && System.currentTimeMillis() - entry.lastUsed > idleTimeoutMs) {
+                entries.remove(address);
+                idleEvictions++;
+                closeQuietly(entry.socket);
+                return;
+            }
+        }
+
+        if (isAlive(entry.socket)) {
+            return;
+        }
+
+        synchronized (this) {
+            probeFailures++;
+            if (peek(address) == entry) {
+                entries.remove(address);
+            }
+        }
+        closeQuietly(entry.socket);
+
+        try {
+            final PrinterTransport socket = connector.connect(address);
+            synchronized (this) {
+                reconnects++;
+            }
+            put(address, socket);
+            synchronized (this) {
+                // a background reconnect is not a use, keep the idle clock running
+                final Entry fresh = peek(address);
+                if (fresh != null) {
+                    fresh.lastUsed = entry.lastUsed;
+                }
+            }
+        } catch (IOException e) {
+            // printer is off or out of range, the next job connects on demand
+        }
+    }
+
+    private Entry peek(String address) {
+        for (Map.Entry<String, Entry> item : entries.entrySet()) {
+            if (item.getKey().equals(address)) {
+                return item.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static boolean isAlive(PrinterTransport socket) {
+        if (!socket.isConnected()) {
+            return false;
+        }
+
+        try {
+            // throws once the RFCOMM channel has been torn down
+            socket.getInputStream().available();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(PrinterTransport socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package id.flutter.plugins;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Devices seen during discovery, keyed by address.
+ *
+ * Repeated broadcasts for the same device only refresh its last seen time; an entry is
+ * reported again when its name or type changes or its RSSI moved by at least
+ * {@link #RSSI_STEP} dBm. Changes are collected until {@link #drainChanges()} is called.
+ *
+ * Entries not seen for {@code maxAgeMs} are dropped, a printer that was switched off stops
+ * counting as known and callers wait for discovery to find it again. Bonded devices are
+ * refreshed whenever discovery starts.
+ */
+class DeviceCache {
+    static final int RSSI_STEP = 6;
+    static final long DEFAULT_MAX_AGE_MS = 2 * 60 * 1000;
+
+    private static class Entry {
+        final String address;
+        String name;
+        int type;
+        Integer rssi;
+        long lastSeen;
+
+        Entry(String address) {
+            this.address = address;
+        }
+
+        Map<String, Object> toMap() {
+            final Map<String, Object> map = new HashMap<>();
+            map.put("code", 4);
+            map.put("address", address);
+            map.put("name", name);
+            map.put("type", type);
+            map.put("rssi", rssi);
+            map.put("lastSeen", lastSeen);
+            return map;
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Set<String> changed = new LinkedHashSet<>();
+    private final long maxAgeMs;
+
+    DeviceCache() {
+        this(DEFAULT_MAX_AGE_MS);
+    }
+
+    DeviceCache(long maxAgeMs) {
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    /**
+     * Records a sighting, {@code rssi} is null for bonded devices that were not scanned.
+     *
+     * @return true when the entry is new or changed enough to be reported again
+     */
+    synchronized boolean update(String address, String name, int type, Integer rssi) {
+        final long now = System.currentTimeMillis();
+        expire(now);
+        Entry entry = entries.get(address);
+        final boolean isNew = entry == null;
+        if (isNew) {
+            entry = new Entry(address);
+            entries.put(address, entry);
+        }
+
+        boolean dirty = isNew;
+        if (name != null && !name.equals(entry.name)) {
+            entry.name = name;
+            dirty = true;
+        }
+        if (type != entry.type) {
+            entry.type = type;
+            dirty = true;
+        }
+        if (rssi != null && (entry.rssi == null || Math.abs(rssi - entry.rssi) >= RSSI_STEP)) {
+            entry.rssi = rssi;
+            dirty = true;
+        }
+        entry.lastSeen = now;
+
+        if (dirty) {
+            changed.add(address);
+        }
+        return dirty;
+    }
+
+    /** Entries that are new or changed since the last call. */
+    synchronized List<Map<String, Object>> drainChanges() {
+        final List<Map<String, Object>> list = new ArrayList<>(changed.size());
+        for (String address : changed) {
+            list.add(entries.get(address).toMap());
+        }
+        changed.clear();
+        return list;
+    }
+
+    synchronized List<Map<String, Object>> snapshot() {
+        expire(System.currentTimeMillis());
+        final List<Map<String, Object>> list = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            list.add(entry.toMap());
+        }
+        return list;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        changed.clear();
+    }
+
+    // called with the lock held
+    private void expire(long now) {
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            if (now - entry.lastSeen > maxAgeMs) {
+                iterator.remove();
+                changed.remove(entry.address);
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package id.flutter.plugins;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs blocking socket work on a small shared thread pool while keeping the
+ * jobs of each printer address strictly ordered.
+ *
+ * Every address gets its own serial queue; at most one job per address is
+ * handed to the pool at a time, so a slow connect to one printer only delays
+ * that printer's queue and never the others. A queue is dropped once it ran
+ * dry, so addresses that are no longer used cost nothing.
+ *
+ * Readers that block on a socket for as long as it is open get their own
+ * bounded pool, they would otherwise hold a printer's queue forever.
+ */
+class DeviceExecutors {
+    private static final int MAX_THREADS = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    // one per pooled socket, with room for the preferred printers kept beyond the pool size
+    static final int MAX_READERS = 2 * ConnectionPool.DEFAULT_MAX_SIZE;
+
+    private final ThreadPoolExecutor pool;
+    private final ThreadPoolExecutor readers;
+    private final Map<String, SerialQueue> queues = new HashMap<>();
+    // guarded by queues, tasks completed by queues that were dropped
+    private long retiredCompleted;
+
+    DeviceExecutors() {
+        this(MAX_THREADS);
+    }
+
+    DeviceExecutors(int maxThreads) {
+        this(maxThreads, MAX_READERS);
+    }
+
+    DeviceExecutors(int maxThreads, int maxReaders) {
+        pool = new ThreadPoolExecutor(maxThreads, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory("printer-io-"));
+        pool.allowCoreThreadTimeOut(true);
+
+        // a queued reader would leave its socket unread, so a full pool rejects instead
+        readers = new ThreadPoolExecutor(0, maxReaders, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), threadFactory("printer-reader-"));
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        final AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    void execute(String address, Runnable task) {
+        final String key = address == null ? "" : address;
+        synchronized (queues) {
+            SerialQueue queue = queues.get(key);
+            if (queue == null) {
+                queue = new SerialQueue(key);
+                queues.put(key, queue);
+            }
+            queue.offer(task);
+        }
+    }
+
+    /**
+     * Runs a read loop that blocks until its socket closes.
+     *
+     * @throws RejectedExecutionException when all reader threads are busy
+     */
+    void executeReader(Runnable reader) {
+        readers.execute(reader);
+    }
+
+    int pendingCount(String address) {
+        synchronized (queues) {
+            SerialQueue queue = queues.get(address);
+            return queue == null ? 0 : queue.tasks.size();
+        }
+    }
+
+    Map<String, Object> metrics() {
+        final Map<String, Object> devices = new HashMap<>();
+        long completed;
+        synchronized (queues) {
+            completed = retiredCompleted;
+            for (Map.Entry<String, SerialQueue> entry : queues.entrySet()) {
+                final SerialQueue queue = entry.getValue();
+                final Map<String, Object> device = new HashMap<>();
+                device.put("pending", queue.tasks.size());
+                device.put("running", queue.active != null);
+                device.put("completed", queue.completed);
+                devices.put(entry.getKey(), device);
+                completed += queue.completed;
+            }
+        }
+
+        final Map<String, Object> data = new HashMap<>();
+        data.put("maxThreads", pool.getMaximumPoolSize());
+        data.put("poolSize", pool.getPoolSize());
+        data.put("activeThreads", pool.getActiveCount());
+        data.put("largestPoolSize", pool.getLargestPoolSize());
+        data.put("completed", completed);
+        data.put("readers", readers.getActiveCount());
+        data.put("maxReaders", readers.getMaximumPoolSize());
+        data.put("devices", devices);
+        return data;
+    }
+
+    void shutdown() {
+        synchronized (queues) {
+            queues.clear();
+        }
+        pool.shutdownNow();
+        readers.shutdownNow();
+    }
+
+    private class SerialQueue {
+        final String key;
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        Runnable active;
+        long completed;
+
+        SerialQueue(String key) {
+            this.key = key;
+        }
+
+        // both called with the queues monitor held
+        void offer(Runnable task) {
+            tasks.offer(() -> {
+                try {
+                    task.run();
+                } finally {
+                    synchronized (queues) {
+                        completed++;
+                        scheduleNext();
+                        if (active == null && queues.get(key) == this) {
+                            queues.remove(key);
+                            retiredCompleted += completed;
+                        }
+                    }
+                }
+            });
+
+            if (active == null) {
+                scheduleNext();
+            }
+        }
+
+        void scheduleNext() {
+            active = tasks.poll();
+            if (active != null) {
+                pool.execute(active);
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package id.flutter.plugins;
+
+import java.util.Arrays;
+
+/**
+ * Turns ARGB scanlines into 1-bit rows with a selectable algorithm, after a gamma and contrast
+ * curve applied through a 256 entry lookup table.
+ *
+ * One instance dithers one image: rows have to be packed top to bottom, in order, since error
+ * diffusion carries state from row to row. The error rows are allocated once per image, nothing
+ * is allocated per row or per pixel.
+ */
+final class Dither {
+    static final String THRESHOLD = "threshold";
+    static final String FLOYD_STEINBERG = "floyd_steinberg";
+    static final String ATKINSON = "atkinson";
+    static final String ORDERED = "ordered";
+
+    private static final int[] BAYER_8 = {
+            0, 32, 8, 40, 2, 34, 10, 42,
+            48, 16, 56, 24, 50, 18, 58, 26,
+            12, 44, 4, 36, 14, 46, 6, 38,
+            60, 28, 52, 20, 62, 30, 54, 22,
+            3, 35, 11, 43, 1, 33, 9, 41,
+            51, 19, 59, 27, 49, 17, 57, 25,
+            15, 47, 7, 39, 13, 45, 5, 37,
+            63, 31, 55, 23, 61, 29, 53, 21,
+    };
+
+    private final String algorithm;
+    private final int width;
+    private final int[] curve = new int[256];
+    private final boolean identity;
+    // error rows, padded by two pixels on both sides so the kernels need no bounds checks
+    private int[] error0;
+    private int[] error1;
+    private int[] error2;
+    private int y;
+
+    Dither(String algorithm, int width, double gamma, double contrast) {
+        if (!isValid(algorithm)) {
+            throw new IllegalArgumentException("unknown dither algorithm " + algorithm);
+        }
+        if (gamma <= 0 || contrast < 0) {
+            throw new IllegalArgumentException("gamma must be positive and contrast not negative");
+        }
+
+        this.algorithm = algorithm;
+        this.width = width;
+        boolean identity = true;
+        for (int i = 0; i < 256; i++) {
+            final double v = (255 * Math.pow(i / 255.0, gamma) - 128) * contrast + 128;
+            curve[i] = Math.max(0, Math.min(255, (int) Math.round(v)));
+            identity &= curve[i] == i;
+        }
+        this.identity = identity;
+
+        if (FLOYD_STEINBERG.equals(algorithm) || ATKINSON.equals(algorithm)) {
+            error0 = new int[width + 4];
+            error1 = new int[width + 4];
+            error2 = new int[width + 4];
+        }
+    }
+
+    static Dither threshold(int width) {
+        return new Dither(THRESHOLD, width, 1, 1);
+    }
+
+    static boolean isValid(String algorithm) {
+        return THRESHOLD.equals(algorithm) || FLOYD_STEINBERG.equals(algorithm)
+                || ATKINSON.equals(algorithm) || ORDERED.equals(algorithm);
+    }
+
+    /**
+     * Packs the next row of {@code width} pixels into {@code widthBytes(width)} bytes starting
+     * at {@code outOffset}, black pixels are set bits.
+     */
+    void packRow(int[] argb, int offset, byte[] out, int outOffset) {
+        if (identity && THRESHOLD.equals(algorithm)) {
+            EscPosRaster.packRow(argb, offset, width, EscPosRaster.DEFAULT_THRESHOLD, out, outOffset);
+            y++;
+            return;
+        }
+
+        Arrays.fill(out, outOffset, outOffset + EscPosRaster.widthBytes(width), (byte) 0);
+        switch (algorithm) {
+            case FLOYD_STEINBERG:
+                floydSteinberg(argb, offset, out, outOffset);
+                break;
+            case ATKINSON:
+                atkinson(argb, offset, out, outOffset);
+                break;
+            case ORDERED:
+                ordered(argb, offset, out, outOffset);
+                break;
+            default:
+                threshold(argb, offset, out, outOffset);
+                break;
+        }
+        y++;
+    }
+
+    private void threshold(int[] argb, int offset, byte[] out, int outOffset) {
+        for (int x = 0; x < width; x++) {
+            if (curve[EscPosRaster.luminance(argb[offset + x])] < EscPosRaster.DEFAULT_THRESHOLD) {
+                out[outOffset + (x >> 3)] |= (byte) (0x80 >>> (x & 7));
+            }
+        }
+    }
+
+    private void ordered(int[] argb, int offset, byte[] out, int outOffset) {
+        final int row = (y & 7) << 3;
+        for (int x = 0; x < width; x++) {
+            // thresholds spread evenly over 2..254
+            final int threshold = BAYER_8[row + (x & 7)] * 4 + 2;
+            if (curve[EscPosRaster.luminance(argb[offset + x])] < threshold) {
+                out[outOffset + (x >> 3)] |= (byte) (0x80 >>> (x & 7));
+            }
+        }
+    }
+
+    // serpentine, errors are kept in 1/16 units
+    private void floydSteinberg(int[] argb, int offset, byte[] out, int outOffset) {
+        final int[] current = error0;
+        final int[] next = error1;
+        final boolean reverse = (y & 1) != 0;
+        final int step = reverse ? -1 : 1;
+        int x = reverse ? width - 1 : 0;
+        for (int i = 0; i < width; i++, x += step) {
+            final int e = x + 2;
+            final int value = curve[EscPosRaster.luminance(argb[offset + x])] + current[e] / 16;
+            final int err;
+            if (value < 128) {
+                out[outOffset + (x >> 3)] |= (byte) (0x80 >>> (x & 7));
+                err = value;
+            } else {
+                err = value - 255;
+            }
+            current[e + step] += err * 7;
+            next[e - step] += err * 3;
+            next[e] += err * 5;
+            next[e + step] += err;
+        }
+
+        Arrays.fill(current, 0);
+        error0 = next;
+        error1 = current;
+    }
+
+    // spreads 6/8 of the error, the lost quarter keeps highlights and shadows clean
+    private void atkinson(int[] argb, int offset, byte[] out, int outOffset) {
+        final int[] current = error0;
+        final int[] next = error1;
+        final int[] after = error2;
+        for (int x = 0; x < width; x++) {
+            final int e = x + 2;
+            final int value = curve[EscPosRaster.luminance(argb[offset + x])] + current[e] / 8;
+            final int err;
+            if (value < 128) {
+                out[outOffset + (x >> 3)] |= (byte) (0x80 >>> (x & 7));
+                err = value;
+            } else {
+                err = value - 255;
+            }
+            current[e + 1] += err;
+            current[e + 2] += err;
+            next[e - 1] += err;
+            next[e] += err;
+            next[e + 1] += err;
+            after[e] += err;
+        }
+
+        Arrays.fill(current, 0);
+        error0 = next;
+        error1 = after;
+        error2 = current;
+    }
+}
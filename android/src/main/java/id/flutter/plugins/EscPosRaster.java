@@ -0,0 +1,216 @@
+package id.flutter.plugins;
+
+/**
+ * ESC/POS raster framing and 1-bit packing of ARGB scanlines.
+ *
+ * Pixels are packed 32 at a time into an int before being stored, a pixel is black when its
+ * luminance (alpha composited over white) is below the threshold. Nothing here allocates per
+ * pixel or per row, callers pack straight into the final payload.
+ */
+final class EscPosRaster {
+    /** {@code GS v 0}, supported by virtually every ESC/POS printer. */
+    static final int MODE_RASTER = 0;
+    /** {@code GS ( L} / {@code GS 8 L} graphics store + print. */
+    static final int MODE_GRAPHICS = 1;
+    /** {@code GS v 0} strips cut to their ink width, see {@link RasterCompactor}. */
+    static final int MODE_RASTER_COMPACT = 2;
+
+    static final int DEFAULT_THRESHOLD = 128;
+
+    /** {@code GS ( L} fn 67, graphics kept in NV memory across power cycles. */
+    static final int STORE_NV = 67;
+    /** {@code GS ( L} fn 83, download graphics, lost when the printer is switched off. */
+    static final int STORE_DOWNLOAD = 83;
+
+    // both stores accept at most this many rows per graphic
+    static final int MAX_STORED_HEIGHT = 2304;
+
+    private static final int GS = 0x1D;
+
+    private EscPosRaster() {
+    }
+
+    static int widthBytes(int widthPx) {
+        return (widthPx + 7) >> 3;
+    }
+
+    static int headerSize(int mode, int widthBytes, int height) {
+        if (mode == MODE_GRAPHICS) {
+            return isLargeGraphics(widthBytes, height) ? 17 : 15;
+        }
+        return 8;
+    }
+
+    static int trailerSize(int mode) {
+        return mode == MODE_GRAPHICS ? GRAPHICS_PRINT.length : 0;
+    }
+
+    /**
+     * Total command size for a {@code widthBytes} x {@code height} bitmap, an upper bound in
+     * {@link #MODE_RASTER_COMPACT}.
+     */
+    static int commandSize(int mode, int widthBytes, int height) {
+        if (mode == MODE_RASTER_COMPACT) {
+            return RasterCompactor.maxSize(widthBytes, height);
+        }
+        return headerSize(mode, widthBytes, height) + widthBytes * height + trailerSize(mode);
+    }
+
+    /** Writes the header in front of the bitmap data and returns the data offset. */
+    static int writeHeader(int mode, byte[] out, int offset, int widthBytes, int height) {
+        if (mode == MODE_GRAPHICS) {
+            return writeGraphicsStoreHeader(out, offset, widthBytes, height);
+        }
+
+        out[offset++] = GS;
+        out[offset++] = 'v';
+        out[offset++] = '0';
+        out[offset++] = 0; // normal density
+        out[offset++] = (byte) widthBytes;
+        out[offset++] = (byte) (widthBytes >> 8);
+        out[offset++] = (byte) height;
+        out[offset++] = (byte) (height >> 8);
+        return offset;
+    }
+
+    /** Writes whatever has to follow the bitmap data and returns the end offset. */
+    static int writeTrailer(int mode, byte[] out, int offset) {
+        if (mode == MODE_GRAPHICS) {
+            System.arraycopy(GRAPHICS_PRINT, 0, out, offset, GRAPHICS_PRINT.length);
+            return offset + GRAPHICS_PRINT.length;
+        }
+        return offset;
+    }
+
+    // GS ( L pL pH 48 50 - print the graphics data in the print buffer
+    private static final byte[] GRAPHICS_PRINT = { GS, '(', 'L', 2, 0, 48, 50 };
+
+    private static boolean isLargeGraphics(int widthBytes, int height) {
+        return widthBytes * height + 10 > 0xFFFF;
+    }
+
+    // GS ( L / GS 8 L - fn 112, store raster graphics data in the print buffer
+    private static int writeGraphicsStoreHeader(byte[] out, int offset, int widthBytes, int height) {
+        final int p = widthBytes * height + 10;
+        out[offset++] = GS;
+        if (isLargeGraphics(widthBytes, height)) {
+            out[offset++] = '8';
+            out[offset++] = 'L';
+            out[offset++] = (byte) p;
+            out[offset++] = (byte) (p >> 8);
+            out[offset++] = (byte) (p >> 16);
+            out[offset++] = (byte) (p >> 24);
+        } else {
+            out[offset++] = '(';
+            out[offset++] = 'L';
+            out[offset++] = (byte) p;
+            out[offset++] = (byte) (p >> 8);
+        }
+        out[offset++] = 48; // m
+        out[offset++] = 112; // fn
+        out[offset++] = 48; // a, monochrome
+        out[offset++] = 1; // bx
+        out[offset++] = 1; // by
+        out[offset++] = 49; // c, color 1
+        final int widthDots = widthBytes * 8;
+        out[offset++] = (byte) widthDots;
+        out[offset++] = (byte) (widthDots >> 8);
+        out[offset++] = (byte) height;
+        out[offset++] = (byte) (height >> 8);
+        return offset;
+    }
+
+    static boolean isValidKey(String key) {
+        return key != null && key.length() == 2
+                && key.charAt(0) >= 32 && key.charAt(0) <= 126
+                && key.charAt(1) >= 32 && key.charAt(1) <= 126;
+    }
+
+    static int storedHeaderSize(int widthBytes, int height) {
+        return widthBytes * height + 11 > 0xFFFF ? 18 : 16;
+    }
+
+    /**
+     * Writes the {@code GS ( L} / {@code GS 8 L} header defining a graphic under the two
+     * character {@code key} in {@code store} and returns the data offset.
+     */
+    static int writeStoreHeader(int store, byte[] out, int offset, String key, int widthBytes, int height) {
+        final int p = widthBytes * height + 11;
+        out[offset++] = GS;
+        if (p > 0xFFFF) {
+            out[offset++] = '8';
+            out[offset++] = 'L';
+            out[offset++] = (byte) p;
+            out[offset++] = (byte) (p >> 8);
+            out[offset++] = (byte) (p >> 16);
+            out[offset++] = (byte) (p >> 24);
+        } else {
+            out[offset++] = '(';
+            out[offset++] = 'L';
+            out[offset++] = (byte) p;
+            out[offset++] = (byte) (p >> 8);
+        }
+        out[offset++] = 48; // m
+        out[offset++] = (byte) store; // fn
+        out[offset++] = 48; // a, monochrome
+        out[offset++] = (byte) key.charAt(0); // kc1
+        out[offset++] = (byte) key.charAt(1); // kc2
+        out[offset++] = 1; // b, one color
+        final int widthDots = widthBytes * 8;
+        out[offset++] = (byte) widthDots;
+        out[offset++] = (byte) (widthDots >> 8);
+        out[offset++] = (byte) height;
+        out[offset++] = (byte) (height >> 8);
+        out[offset++] = 49; // c, color 1
+        return offset;
+    }
+
+    /** {@code GS ( L} fn 69 / fn 85, prints the graphic stored under {@code key} at normal size. */
+    static byte[] printStored(int store, String key) {
+        return new byte[] { GS, '(', 'L', 6, 0, 48, (byte) (store + 2),
+                (byte) key.charAt(0), (byte) key.charAt(1), 1, 1 };
+    }
+
+    /**
+     * Packs one ARGB scanline into {@code widthBytes(width)} bytes starting at {@code outOffset}.
+     * Padding bits at the end of the row are left white.
+     */
+    static void packRow(int[] argb, int offset, int width, int threshold, byte[] out, int outOffset) {
+        int x = 0;
+        // 32 pixels per word
+        for (; x + 32 <= width; x += 32) {
+            int word = 0;
+            for (int i = 0; i < 32; i++) {
+                word = (word << 1) | ((luminance(argb[offset + x + i]) - threshold) >>> 31);
+            }
+            out[outOffset++] = (byte) (word >>> 24);
+            out[outOffset++] = (byte) (word >>> 16);
+            out[outOffset++] = (byte) (word >>> 8);
+            out[outOffset++] = (byte) word;
+        }
+
+        // tail, one byte at a time
+        while (x < width) {
+            final int count = Math.min(8, width - x);
+            int bits = 0;
+            for (int i = 0; i < count; i++) {
+                bits = (bits << 1) | ((luminance(argb[offset + x + i]) - threshold) >>> 31);
+            }
+            out[outOffset++] = (byte) (bits << (8 - count));
+            x += count;
+        }
+    }
+
+    /** BT.601 luma of an ARGB pixel composited over white, 0..255. */
+    static int luminance(int argb) {
+        final int a = argb >>> 24;
+        final int r = (argb >> 16) & 0xFF;
+        final int g = (argb >> 8) & 0xFF;
+        final int b = argb & 0xFF;
+        final int y = (r * 77 + g * 150 + b * 29) >> 8;
+        if (a == 0xFF) {
+            return y;
+        }
+        return (y * a + 255 * (255 - a)) / 255;
+    }
+}
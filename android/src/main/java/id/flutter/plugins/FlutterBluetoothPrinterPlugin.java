@@ -4,6 +4,7 @@ import static android.os.Build.VERSION.SDK_INT;
 
 import android.Manifest;
 import android.app.Activity;
+import android.app.Application;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
 import android.bluetooth.BluetoothManager;
@@ -14,27 +15,36 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.os.Build;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
 import io.flutter.embedding.engine.plugins.activity.ActivityAware;
 import io.flutter.embedding.engine.plugins.activity.ActivityPluginBinding;
+import io.flutter.plugin.common.BasicMessageChannel;
+import io.flutter.plugin.common.BinaryCodec;
 import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
@@ -68,74 +78,36 @@ public class FlutterBluetoothPrinterPlugin implements FlutterPlugin, ActivityAwa
     private MethodChannel.Result activeResult;
     private boolean permissionGranted = false;
 
-    private ConnectedThread thread;
-    private BluetoothSocket socket;
-    private BluetoothDevice device;
+    // the session connectKotlin, writeKotlin and the read channel have always used
+    static final String DEFAULT_SESSION = "default";
 
-    private class ConnectedThread extends Thread {
-        private final BluetoothSocket socket;
-        private final java.io.InputStream inputStream;
-        private final java.io.OutputStream outputStream;
-        private final byte[] buffer = new byte[1024];
-        public boolean readStream = true;
-
-        public ConnectedThread(BluetoothSocket socket) throws IOException {
-            this.socket = socket;
-            this.inputStream = socket.getInputStream();
-            this.outputStream = socket.getOutputStream();
-        }
-
-        @Override
-        public void run() {
-            int numBytes;
-            while (readStream) {
-                try {
-                    numBytes = inputStream.read(buffer);
-                    if (numBytes > 0) {
-                        Log.i("Bluetooth Read", "read " + numBytes + " bytes");
-                        final byte[] receivedData = Arrays.copyOf(buffer, numBytes);
-                        new Handler(Looper.getMainLooper())
-                                .post(() -> publishBluetoothData(receivedData));
-                    }
-                } catch (IOException e) {
-                    Log.e("Bluetooth Read", "input stream disconnected", e);
-                    new Handler(Looper.getMainLooper()).post(() -> publishBluetoothStatus(0));
-                    readStream = false;
-                    break;
-                }
-            }
-        }
-
-        public void write(byte[] bytes) {
-            try {
-                outputStream.write(bytes);
-                outputStream.flush();
-            } catch (IOException e) {
-                readStream = false;
-                Log.e("Bluetooth Write", "could not send data to other device", e);
-                new Handler(Looper.getMainLooper()).post(() -> publishBluetoothStatus(0));
-            }
-        }
-    }
+    private StreamSessions streamSessions;
+    private EventChannel.EventSink sessionReadSink;
+    // applied to sessions opened after configureReadChannel
+    private int readWindowMs = ReadAggregator.DEFAULT_WINDOW_MS;
+    private int readWindowBytes = ReadAggregator.DEFAULT_WINDOW_BYTES;
+    private int readMaxPendingBytes = ReadAggregator.DEFAULT_MAX_PENDING_BYTES;
+    private String readOverflow = ReadAggregator.DROP_OLDEST;
 
     // END OF KOTLIN CODE
 
+    private static final long DISCOVERY_BATCH_MS = 250;
+
     private final Map<Object, EventChannel.EventSink> sinkList = new HashMap<>();
+    private final DeviceCache deviceCache = new DeviceCache();
+    private final FragmentCache fragmentCache = new FragmentCache();
+    private boolean discoveryFlushScheduled = false;
     private final BroadcastReceiver discoveryReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
             String action = intent.getAction();
             if (BluetoothDevice.ACTION_FOUND.equals(action)) {
-                BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
-                final Map<String, Object> map = deviceToMap(device);
-
-                for (EventChannel.EventSink sink : sinkList.values()) {
-                    sink.success(map);
-                }
+                onDeviceFound(intent);
             }
         }
     };
     private MethodChannel channel;
+    private BasicMessageChannel<ByteBuffer> writeChannel;
     private Activity activity;
     private BluetoothAdapter bluetoothAdapter;
     private final BroadcastReceiver stateReceiver = new BroadcastReceiver() {
@@ -150,20 +122,52 @@ public class FlutterBluetoothPrinterPlugin implements FlutterPlugin, ActivityAwa
                     for (EventChannel.EventSink sink : sinkList.values()) {
                         sink.success(data);
                     }
+                    warmer.reportDown(PrinterWarmer.TRIGGER_ADAPTER_OFF, "bluetooth disabled");
+                    storedGraphics.forgetVolatile();
                 } else if (value == BluetoothAdapter.STATE_ON) {
                     startDiscovery(false);
+                    warmer.warmAll(PrinterWarmer.TRIGGER_ADAPTER_ON);
                 }
             }
         }
     };
     private FlutterPluginBinding flutterPluginBinding;
-    private final Map<String, BluetoothSocket> connectedDevices = new HashMap<>();
     private Handler mainThread;
+    private DeviceExecutors executors;
+    private PrintJobQueue jobQueue;
+    private ConnectionPool connectionPool;
+    private ConnectStrategies connectStrategies;
+    private PrinterWarmer warmer;
+    private StoredGraphics storedGraphics;
+    private PrinterCapabilities capabilities;
+    private Application.ActivityLifecycleCallbacks lifecycleCallbacks;
+    private ExecutorService encoder;
+    private ReadAggregator readAggregator;
+    private JobMetrics jobMetrics;
+    private EventChannel.EventSink metricsSink;
+    // one reader per pooled socket, replaced when the pool hands out a new socket and dropped
+    // once its socket closed
+    private final Map<String, BluetoothStreamReader> statusReaders = new HashMap<>();
+    // monitor of the pipelined job currently running on each printer
+    private final Map<String, StatusMonitor> statusMonitors = new HashMap<>();
 
     @Override
     public void onAttachedToEngine(@NonNull FlutterPluginBinding flutterPluginBinding) {
         this.flutterPluginBinding = flutterPluginBinding;
         this.mainThread = new Handler(Looper.getMainLooper());
+        this.readAggregator = new ReadAggregator(mainThread::postDelayed, this::publishBluetoothData);
+        this.jobMetrics = new JobMetrics(job -> mainThread.post(() -> {
+            if (metricsSink != null) {
+                metricsSink.success(job);
+            }
+        }));
+        this.executors = new DeviceExecutors();
+        this.streamSessions = new StreamSessions(this::dialStream, executors, mainThread::postDelayed,
+                (session, address, status) -> mainThread.post(() -> publishSessionStatus(session, address, status)));
+        // two threads so a long banded print never blocks encodeImage
+        this.encoder = Executors.newFixedThreadPool(2);
+        this.jobQueue = new PrintJobQueue(executors, this::writeQueuedJob,
+                new File(flutterPluginBinding.getApplicationContext().getFilesDir(), "print_jobs"));
 
         if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.M) {
             BluetoothManager bluetoothManager = flutterPluginBinding.getApplicationContext()
@@ -173,13 +177,53 @@ public class FlutterBluetoothPrinterPlugin implements FlutterPlugin, ActivityAwa
             bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
         }
 
+        this.connectStrategies = new ConnectStrategies(bluetoothAdapter,
+                flutterPluginBinding.getApplicationContext()
+                        .getSharedPreferences("flutter_bluetooth_printer_connect", Context.MODE_PRIVATE));
+        // tcp://host:port addresses are network printers, everything else a Bluetooth MAC
+        this.connectionPool = new ConnectionPool(address -> TcpTransport.isTcp(address)
+                ? TcpTransport.connect(address, TcpTransport.DEFAULT_CONNECT_TIMEOUT_MS)
+                : connectStrategies.connect(address), executors);
+        this.warmer = new PrinterWarmer(connectionPool, executors,
+                flutterPluginBinding.getApplicationContext()
+                        .getSharedPreferences("flutter_bluetooth_printer_warm", Context.MODE_PRIVATE),
+                event -> mainThread.post(() -> {
+                    if (bluetoothStatusChannelSink != null) {
+                        bluetoothStatusChannelSink.success(event);
+                    }
+                }));
+
+        this.storedGraphics = new StoredGraphics(flutterPluginBinding.getApplicationContext()
+                .getSharedPreferences("flutter_bluetooth_printer_graphics", Context.MODE_PRIVATE));
+        this.capabilities = new PrinterCapabilities(flutterPluginBinding.getApplicationContext()
+                .getSharedPreferences("flutter_bluetooth_printer_capabilities", Context.MODE_PRIVATE));
+
         channel = new MethodChannel(flutterPluginBinding.getBinaryMessenger(), "maseka.dev/flutter_bluetooth_printer");
         channel.setMethodCallHandler(this);
 
+        writeChannel = new BasicMessageChannel<>(
+                flutterPluginBinding.getBinaryMessenger(), "maseka.dev/flutter_bluetooth_printer/write",
+                BinaryCodec.INSTANCE);
+        writeChannel.setMessageHandler(this::onWriteMessage);
+
         EventChannel discoveryChannel = new EventChannel(flutterPluginBinding.getBinaryMessenger(),
                 "maseka.dev/flutter_bluetooth_printer/discovery");
         discoveryChannel.setStreamHandler(this);
 
+        EventChannel metricsChannel = new EventChannel(flutterPluginBinding.getBinaryMessenger(),
+                "maseka.dev/flutter_bluetooth_printer/metrics");
+        metricsChannel.setStreamHandler(new EventChannel.StreamHandler() {
+            @Override
+            public void onListen(Object arguments, EventChannel.EventSink events) {
+                metricsSink = events;
+            }
+
+            @Override
+            public void onCancel(Object arguments) {
+                metricsSink = null;
+            }
+        });
+
         IntentFilter filter = new IntentFilter(BluetoothDevice.ACTION_FOUND);
         flutterPluginBinding.getApplicationContext().registerReceiver(discoveryReceiver, filter);
 
@@ -193,6 +237,8 @@ public class FlutterBluetoothPrinterPlugin implements FlutterPlugin, ActivityAwa
                 "maseka.dev/flutter_bluetooth_printer/read");
         bluetoothStatusChannel = new EventChannel(flutterPluginBinding.getBinaryMessenger(),
                 "maseka.dev/flutter_bluetooth_printer/status");
+        EventChannel sessionReadChannel = new EventChannel(flutterPluginBinding.getBinaryMessenger(),
+                "maseka.dev/flutter_bluetooth_printer/sessions/read");
 
         ba = BluetoothAdapter.getDefaultAdapter();
         looper = flutterPluginBinding.getApplicationContext().getMainLooper();
@@ -222,10 +268,25 @@ public class FlutterBluetoothPrinterPlugin implements FlutterPlugin, ActivityAwa
             }
         });
 
+        sessionReadChannel.setStreamHandler(new EventChannel.StreamHandler() {
+            @Override
+            public void onListen(Object arguments, EventChannel.EventSink events) {
+                sessionReadSink = events;
+            }
+
+            @Override
+            public void onCancel(Object arguments) {
+                sessionReadSink = null;
+            }
+        });
+
         bluetoothStatusChannel.setStreamHandler(new EventChannel.StreamHandler() {
             @Override
             public void onListen(Object arguments, EventChannel.EventSink events) {
                 bluetoothStatusChannelSink = events;
+                for (Map<String, Object> readiness : warmer.lastReadiness()) {
+                    events.success(readiness);
+                }
             }
 
             @Override
@@ -236,15 +297,50 @@ public class FlutterBluetoothPrinterPlugin implements FlutterPlugin, ActivityAwa
 
         // THIS IS END OF KOTLIN SECTION
 
+        warmer.warmAll(PrinterWarmer.TRIGGER_ATTACH);
     }
 
-    private Map<String, Object> deviceToMap(BluetoothDevice device) {
-        final HashMap<String, Object> map = new HashMap<>();
-        map.put("code", 4);
-        map.put("name", device.getName());
-        map.put("address", device.getAddress());
-        map.put("type", device.getType());
-        return map;
+    private void onDeviceFound(Intent intent) {
+        BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+        short rssi = intent.getShortExtra(BluetoothDevice.EXTRA_RSSI, Short.MIN_VALUE);
+        if (deviceCache.update(device.getAddress(), device.getName(), device.getType(),
+                rssi == Short.MIN_VALUE ? null : (int) rssi)) {
+            scheduleDiscoveryFlush();
+        }
+    }
+
+    private void scheduleDiscoveryFlush() {
+        if (discoveryFlushScheduled) {
+            return;
+        }
+
+        discoveryFlushScheduled = true;
+        mainThread.postDelayed(this::flushDiscovery, DISCOVERY_BATCH_MS);
+    }
+
+    // one event per batch of new or changed devices
+    private void flushDiscovery() {
+        discoveryFlushScheduled = false;
+        final List<Map<String, Object>> changes = deviceCache.drainChanges();
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        final Map<String, Object> batch = discoveryBatch(changes);
+        for (EventChannel.EventSink sink : sinkList.values()) {
+            sink.success(batch);
+        }
+
+        for (Map<String, Object> device : changes) {
+            publishBluetoothDevice((String) device.get("address"), (String) device.get("name"));
+        }
+    }
+
+    private Map<String, Object> discoveryBatch(List<Map<String, Object>> devices) {
+        final Map<String, Object> batch = new HashMap<>();
+        batch.put("code", 4);
+        batch.put("devices", devices);
+        return batch;
     }
 
     private boolean ensurePermission(boolean request) {
@@ -302,14 +398,12 @@ public class FlutterBluetoothPrinterPlugin implements FlutterPlugin, ActivityAwa
             return;
         }
 
-        // immediately return bonded devices
+        // immediately return bonded devices, only those not reported yet
         Set<BluetoothDevice> bonded = bluetoothAdapter.getBondedDevices();
         for (BluetoothDevice device : bonded) {
-            final Map<String, Object> map = deviceToMap(device);
-            for (EventChannel.EventSink sink : sinkList.values()) {
-                sink.success(map);
-            }
+            deviceCache.update(device.getAddress(), device.getName(), device.getType(), null);
         }
+        flushDiscovery();
 
         if (bluetoothAdapter.isDiscovering()) {
             bluetoothAdapter.cancelDiscovery();
@@ -324,9 +418,10 @@ public class FlutterBluetoothPrinterPlugin implements FlutterPlugin, ActivityAwa
         }
     }
 
-    private void updatePrintingProgress(int total, int progress) {
+    private void updatePrintingProgress(String address, int total, int progress) {
         mainThread.post(() -> {
             Map<String, Object> data = new HashMap<>();
+            data.put("address", address);
             data.put("total", total);
             data.put("progress", progress);
 
@@ -334,59 +429,343 @@ public class FlutterBluetoothPrinterPlugin implements FlutterPlugin, ActivityAwa
         });
     }
 
+    /** A job's bytes, written from the start again when the first attempt hit a stale socket. */
+    private interface Payload {
+        void write(ChunkedWriter writer, ChunkedWriter.ProgressListener listener) throws Exception;
+    }
+
+    private void writePooled(String address, byte[] data, int offset, int length, int maxBufferSize, int delayTime,
+            StatusMonitor monitor, ChunkedWriter.ProgressListener listener, JobMetrics.Job job) throws Exception {
+        writePooled(address, (writer, progress) -> writer.write(data, offset, length, progress), maxBufferSize,
+                delayTime, monitor, listener, job);
+    }
+
+    // must run on the printer's serial executor
+    // records the job's timing whatever the outcome, job was started when the request arrived
+    private void writePooled(String address, Payload payload, int maxBufferSize, int delayTime,
+            StatusMonitor monitor, ChunkedWriter.ProgressListener listener, JobMetrics.Job job) throws Exception {
+        job.begin();
+        Exception failure = null;
+        try {
+            writeAttempts(address, payload, maxBufferSize, delayTime, monitor, listener, job);
+        } catch (Exception e) {
+            failure = e;
+            throw e;
+        } finally {
+            jobMetrics.finish(job, failure);
+        }
+    }
+
+    private void writeAttempts(String address, Payload payload, int maxBufferSize, int delayTime,
+            StatusMonitor monitor, ChunkedWriter.ProgressListener listener, JobMetrics.Job job) throws Exception {
+        for (int attempt = 0;; attempt++) {
+            final long connectStart = System.nanoTime();
+            job.reused &= connectionPool.contains(address);
+            PrinterTransport transport = connectionPool.acquire(address);
+            job.connectNanos += System.nanoTime() - connectStart;
+            final int[] written = { 0 };
+            BluetoothStreamReader reader = null;
+            try {
+                if (monitor != null) {
+                    // status answers arrive on the reader thread while this one keeps sending
+                    reader = statusReader(address, transport);
+                    synchronized (statusMonitors) {
+                        statusMonitors.put(address, monitor);
+                    }
+                    reader.startReading();
+                }
+
+                ChunkedWriter writer = new ChunkedWriter(transport.getOutputStream(), maxBufferSize, delayTime,
+                        monitor);
+                final long writeStart = System.nanoTime();
+                try {
+                    payload.write(writer, (total, sent) -> {
+                        written[0] = sent;
+                        if (listener != null) {
+                            listener.onProgress(total, sent);
+                        }
+                    });
+                    if (monitor != null) {
+                        monitor.finish(transport.getOutputStream());
+                    }
+                } finally {
+                    job.bytes += written[0];
+                    job.writeNanos += System.nanoTime() - writeStart;
+                    job.flushNanos += writer.flushNanos();
+                }
+                return;
+            } catch (IOException e) {
+                // a socket that died while idle fails on its first chunk, after that part of
+                // the ticket may already be on paper and resending would duplicate it
+                if (attempt > 0 || written[0] > 0) {
+                    connectionPool.close(address);
+                    // queued behind this job, so it connects once the failure was reported
+                    warmer.rewarm(address, PrinterWarmer.TRIGGER_JOB_FAILED);
+                    throw e;
+                }
+                connectionPool.invalidateForRetry(address);
+                job.retries++;
+            } finally {
+                if (reader != null) {
+                    reader.stopReading();
+                    synchronized (statusMonitors) {
+                        statusMonitors.remove(address);
+                    }
+                }
+            }
+        }
+    }
+
+    interface MultiWriteCallback {
+        void onComplete(Map<String, Object> results);
+    }
+
+    /**
+     * Writes the same payload to every printer at once, each on its own serial executor so
+     * the total time is that of the slowest printer. All writers share {@code data}, they
+     * only ever read it.
+     */
+    private void writeMulti(List<String> addresses, byte[] data, boolean keepConnected, int maxBufferSize,
+            int delayTime, MultiWriteCallback callback) {
+        final long start = SystemClock.elapsedRealtime();
+        final Map<String, Object> printers = new HashMap<>();
+        final AtomicInteger remaining = new AtomicInteger(addresses.size());
+
+        for (String address : addresses) {
+            final JobMetrics.Job job = jobMetrics.start(address, "multi");
+            executors.execute(address, () -> {
+                final long begin = SystemClock.elapsedRealtime();
+                final Map<String, Object> entry = new HashMap<>();
+                try {
+                    writePooled(address, data, 0, data.length, maxBufferSize, delayTime, null, null, job);
+                    entry.put("success", true);
+                } catch (Exception e) {
+                    entry.put("success", false);
+                    entry.put("error", e.getMessage() == null ? e.toString() : e.getMessage());
+                } finally {
+                    if (!keepConnected) {
+                        connectionPool.release(address);
+                    }
+                }
+
+                final long end = SystemClock.elapsedRealtime();
+                entry.put("queuedMs", begin - start);
+                entry.put("writeMs", end - begin);
+                entry.put("elapsedMs", end - start);
+                synchronized (printers) {
+                    printers.put(address, entry);
+                }
+
+                if (remaining.decrementAndGet() == 0) {
+                    final Map<String, Object> results = new HashMap<>();
+                    synchronized (printers) {
+                        results.put("printers", new HashMap<>(printers));
+                    }
+                    results.put("bytes", data.length);
+                    results.put("totalMs", SystemClock.elapsedRealtime() - start);
+                    callback.onComplete(results);
+                }
+            });
+        }
+    }
+
+    private StatusMonitor newStatusMonitor(String address, Integer maxPauseMs) {
+        return new StatusMonitor(StatusMonitor.DEFAULT_POLL_INTERVAL_MS,
+                maxPauseMs == null ? StatusMonitor.DEFAULT_MAX_PAUSE_MS : maxPauseMs,
+                (paused, reason, status) -> {
+                    final Map<String, Object> data = new HashMap<>();
+                    data.put("address", address);
+                    data.put("paused", paused);
+                    data.put("reason", reason);
+                    data.put("status", status);
+                    mainThread.post(() -> channel.invokeMethod("onPrinterStatus", data));
+                });
+    }
+
+    // queued jobs always keep the socket open, the next ticket is usually right behind
+    private void writeQueuedJob(String address, byte[] data, int maxBufferSize, int delayTime) throws Exception {
+        writePooled(address, data, 0, data.length, maxBufferSize, delayTime, null, null,
+                jobMetrics.start(address, "queue"));
+    }
+
+    private void printPayload(String address, byte[] data, int offset, int length, boolean keepConnected,
+            int maxBufferSize, int delayTime, StatusMonitor monitor, JobMetrics.Job job) throws Exception {
+        printPayload(address, (writer, progress) -> writer.write(data, offset, length, progress), keepConnected,
+                maxBufferSize, delayTime, monitor, job);
+    }
+
+    // must run on the printer's serial executor
+    private void printPayload(String address, Payload payload, boolean keepConnected, int maxBufferSize,
+            int delayTime, StatusMonitor monitor, JobMetrics.Job job) throws Exception {
+        try {
+            writePooled(address, payload, maxBufferSize, delayTime, monitor, (total, sent) -> {
+                if (sent == 0) {
+                    // PRINTING
+                    mainThread.post(() -> channel.invokeMethod("didUpdateState", 2));
+                }
+                updatePrintingProgress(address, total, sent);
+            }, job);
+
+            // COMPLETED
+            mainThread.post(() -> channel.invokeMethod("didUpdateState", 3));
+        } finally {
+            if (!keepConnected) {
+                connectionPool.release(address);
+            }
+        }
+    }
+
+    /**
+     * Binary write path with one copy of the payload on each side: Dart copies it into the framed
+     * message, BinaryCodec hands Java a heap copy of that message and the payload is written from
+     * it in place. The method codec path serializes it into the call map on top of that and
+     * decodes it into a fresh byte[].
+     *
+     * Message layout (little endian): u8 version, u8 flags (bit 0 keep connected, bit 1 pipelined
+     * status polling), u16 address length, u32 max buffer size, u32 delay time, address (UTF-8),
+     * payload.
+     * Reply: u8 status (1 success), followed by the UTF-8 error message on failure.
+     */
+    private void onWriteMessage(ByteBuffer message, BasicMessageChannel.Reply<ByteBuffer> reply) {
+        if (message == null || message.remaining() < 12) {
+            reply.reply(writeReply("malformed write message"));
+            return;
+        }
+
+        message.order(ByteOrder.LITTLE_ENDIAN);
+        final int version = message.get() & 0xFF;
+        if (version != 1) {
+            reply.reply(writeReply("unsupported write message version " + version));
+            return;
+        }
+
+        final int flags = message.get();
+        final boolean keepConnected = (flags & 0x01) != 0;
+        final boolean pipelined = (flags & 0x02) != 0;
+        final byte[] addressBytes = new byte[message.getShort() & 0xFFFF];
+        final int maxBufferSize = message.getInt();
+        final int delayTime = message.getInt();
+        message.get(addressBytes);
+        final String address = new String(addressBytes, Charset.forName("UTF-8"));
+
+        final byte[] data;
+        final int offset;
+        final int length = message.remaining();
+        if (message.hasArray()) {
+            data = message.array();
+            offset = message.arrayOffset() + message.position();
+        } else {
+            data = new byte[length];
+            message.get(data);
+            offset = 0;
+        }
+
+        // CONNECTING
+        channel.invokeMethod("didUpdateState", 1);
+        final JobMetrics.Job job = jobMetrics.start(address, "binary");
+        executors.execute(address, () -> {
+            String error = null;
+            try {
+                printPayload(address, data, offset, length, keepConnected, maxBufferSize, delayTime,
+                        pipelined ? newStatusMonitor(address, null) : null, job);
+            } catch (Exception e) {
+                error = e.getMessage() == null ? e.toString() : e.getMessage();
+            }
+
+            final String failure = error;
+            mainThread.post(() -> reply.reply(writeReply(failure)));
+        });
+    }
+
+    // parts are fragment ids or literal bytes, text variables are encoded with the given charset
+    private byte[] compileFragments(MethodCall call) throws FragmentCache.MissingFragmentException {
+        List<Object> parts = call.argument("parts");
+        Map<String, Object> variables = call.argument("variables");
+        String charsetName = call.argument("charset");
+        Charset charset = Charset.forName(charsetName == null ? "ISO-8859-1" : charsetName);
+
+        Map<String, byte[]> values = new HashMap<>();
+        if (variables != null) {
+            for (Map.Entry<String, Object> entry : variables.entrySet()) {
+                Object value = entry.getValue();
+                if (value instanceof byte[]) {
+                    values.put(entry.getKey(), (byte[]) value);
+                } else if (value != null) {
+                    values.put(entry.getKey(), value.toString().getBytes(charset));
+                }
+            }
+        }
+        return fragmentCache.compile(parts == null ? new ArrayList<>() : parts, values);
+    }
+
+    // cropped strips are plain GS v 0 blocks, so cropRaster only applies to raster mode;
+    // useImageRaster never changed the Dart encoder's GS v 0 output, graphics is opt-in
+    private static int rasterMode(MethodCall call) {
+        return rasterMode(call, true);
+    }
+
+    private static int rasterMode(MethodCall call, boolean cropAllowed) {
+        Boolean graphics = call.argument("graphics");
+        Boolean crop = call.argument("cropRaster");
+        if (graphics != null && graphics) {
+            return EscPosRaster.MODE_GRAPHICS;
+        }
+        return crop != null && crop && cropAllowed
+                ? EscPosRaster.MODE_RASTER_COMPACT
+                : EscPosRaster.MODE_RASTER;
+    }
+
+    // vertical resolution, compact output feeds blank rows in dots
+    private static int dpi(MethodCall call) {
+        Integer dpi = call.argument("dpi");
+        return dpi == null ? RasterCompactor.DEFAULT_DPI : dpi;
+    }
+
+    private static Dither newDither(MethodCall call, int dotsPerLine) {
+        String algorithm = call.argument("dither");
+        Double gamma = call.argument("gamma");
+        Double contrast = call.argument("contrast");
+        return new Dither(algorithm == null ? Dither.THRESHOLD : algorithm, dotsPerLine,
+                gamma == null ? 1 : gamma, contrast == null ? 1 : contrast);
+    }
+
+    private static ByteBuffer writeReply(String error) {
+        final byte[] message = error == null ? new byte[0] : error.getBytes(Charset.forName("UTF-8"));
+        final ByteBuffer reply = ByteBuffer.allocateDirect(1 + message.length);
+        reply.put((byte) (error == null ? 1 : 0));
+        reply.put(message);
+        return reply;
+    }
+
     @Override
     public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
         final String method = call.method;
         switch (method) {
             case "connect": {
-                new Thread(() -> {
-                    synchronized (FlutterBluetoothPrinterPlugin.this) {
-                        try {
-                            String address = call.argument("address");
-                            BluetoothSocket bluetoothSocket = connectedDevices.get(address);
-                            if (bluetoothSocket == null) {
-                                final BluetoothDevice device = bluetoothAdapter.getRemoteDevice(address);
-                                // Check if device is paired
-                                if (device.getBondState() == BluetoothDevice.BOND_BONDED) {
-                                    try {
-                                        // Unpair the device
-                                        Method removeBondMethod = device.getClass().getMethod("removeBond");
-                                        Boolean success = (Boolean) removeBondMethod.invoke(device);
-
-                                        if (!success) {
-                                            throw new Exception("Failed to unpair device");
-                                        }
-
-                                        // Wait for unpairing to complete
-                                        int retries = 0;
-                                        while (device.getBondState() == BluetoothDevice.BOND_BONDED && retries++ < 10) {
-                                            Thread.sleep(200);
-                                        }
-                                    } catch (Exception e) {
-                                        mainThread.post(() -> {
-                                            result.error("unpair_error", "Failed to unpair device: " + e.getMessage(),
-                                                    null);
-                                        });
-                                        return;
-                                    }
-                                }
-                                UUID uuid = UUID.fromString("00001101-0000-1000-8000-00805f9b34fb");
-                                bluetoothSocket = device.createRfcommSocketToServiceRecord(uuid);
-                                bluetoothSocket.connect();
-                                connectedDevices.put(address, bluetoothSocket);
-                            }
+                String address = call.argument("address");
+                String strategy = call.argument("strategy");
+                if (strategy != null) {
+                    if (!ConnectStrategies.isValid(strategy)) {
+                        result.error("error", "unknown connect strategy " + strategy, null);
+                        return;
+                    }
+                    connectStrategies.setMode(address, strategy);
+                }
 
-                            mainThread.post(() -> {
-                                // DONE
-                                result.success(true);
-                            });
-                        } catch (Exception e) {
-                            mainThread.post(() -> {
-                                result.error("error", e.getMessage(), null);
-                            });
-                        }
+                executors.execute(address, () -> {
+                    try {
+                        connectionPool.acquire(address);
+
+                        mainThread.post(() -> {
+                            // DONE
+                            result.success(true);
+                        });
+                    } catch (Exception e) {
+                        mainThread.post(() -> {
+                            result.error("error", e.getMessage(), null);
+                        });
                     }
-                }).start();
+                });
                 return;
             }
             case "getState": {
@@ -414,94 +793,438 @@ public class FlutterBluetoothPrinterPlugin implements FlutterPlugin, ActivityAwa
             }
 
             case "disconnect": {
-                new Thread(() -> {
-                    synchronized (FlutterBluetoothPrinterPlugin.this) {
-                        try {
-                            String address = call.argument("address");
-                            BluetoothSocket socket = connectedDevices.remove(address);
-                            if (socket != null) {
-                                OutputStream out = socket.getOutputStream();
-                                out.flush();
-                                out.close();
-                                socket.close();
-                            }
-
-                            mainThread.post(() -> {
-                                result.success(true);
-                            });
-                        } catch (Exception e) {
-                            mainThread.post(() -> {
-                                result.error("error", e.getMessage(), null);
-                            });
-                        }
+                String address = call.argument("address");
+                executors.execute(address, () -> {
+                    try {
+                        connectionPool.close(address);
+                        warmer.reportDisconnected(address);
+
+                        mainThread.post(() -> {
+                            result.success(true);
+                        });
+                    } catch (Exception e) {
+                        mainThread.post(() -> {
+                            result.error("error", e.getMessage(), null);
+                        });
                     }
-                }).start();
+                });
                 return;
             }
 
             case "write": {
                 // CONNECTING
                 channel.invokeMethod("didUpdateState", 1);
-                new Thread(() -> {
-                    synchronized (FlutterBluetoothPrinterPlugin.this) {
-                        try {
-                            String address = call.argument("address");
-                            boolean keepConnected = call.argument("keep_connected");
-                            byte[] data = call.argument("data");
-
-                            BluetoothSocket bluetoothSocket = connectedDevices.get(address);
-                            if (bluetoothSocket == null) {
-                                final BluetoothDevice device = bluetoothAdapter.getRemoteDevice(address);
-                                UUID uuid = UUID.fromString("00001101-0000-1000-8000-00805f9b34fb");
-                                bluetoothSocket = device.createRfcommSocketToServiceRecord(uuid);
-                                bluetoothSocket.connect();
-                            }
+                String address = call.argument("address");
+                JobMetrics.Job job = jobMetrics.start(address, "write");
+                executors.execute(address, () -> {
+                    try {
+                        boolean keepConnected = call.argument("keep_connected");
+                        byte[] data = call.argument("data");
+                        Integer maxBufferSize = call.argument("max_buffer_size");
+                        Integer delayTime = call.argument("delay_time");
+                        Boolean pipelined = call.argument("pipelined");
+                        Integer maxPauseMs = call.argument("max_pause_ms");
+
+                        assert data != null;
+
+                        printPayload(address, data, 0, data.length, keepConnected,
+                                maxBufferSize == null ? 0 : maxBufferSize,
+                                delayTime == null ? 0 : delayTime,
+                                pipelined != null && pipelined ? newStatusMonitor(address, maxPauseMs) : null,
+                                job);
+
+                        mainThread.post(() -> {
+                            // DONE
+                            result.success(true);
+                        });
+                    } catch (Exception e) {
+                        mainThread.post(() -> {
+                            result.error("error", e.getMessage(), null);
+                        });
+                    }
+                });
+                return;
+            }
 
-                            try {
-                                if (keepConnected && !connectedDevices.containsKey(address)) {
-                                    connectedDevices.put(address, bluetoothSocket);
-                                }
+            case "writeMulti": {
+                List<String> addresses = call.argument("addresses");
+                byte[] data = call.argument("data");
+                Boolean keepConnected = call.argument("keep_connected");
+                Integer maxBufferSize = call.argument("max_buffer_size");
+                Integer delayTime = call.argument("delay_time");
+                if (addresses == null || addresses.isEmpty() || data == null) {
+                    result.error("error", "addresses and data are required", null);
+                    return;
+                }
 
-                                InputStream inputStream = bluetoothSocket.getInputStream();
-                                OutputStream writeStream = bluetoothSocket.getOutputStream();
+                writeMulti(new ArrayList<>(new LinkedHashSet<>(addresses)), data,
+                        keepConnected != null && keepConnected,
+                        maxBufferSize == null ? 0 : maxBufferSize,
+                        delayTime == null ? 0 : delayTime,
+                        results -> mainThread.post(() -> result.success(results)));
+                return;
+            }
 
-                                // PRINTING
-                                mainThread.post(() -> channel.invokeMethod("didUpdateState", 2));
-                                assert data != null;
+            case "enqueueJob": {
+                String address = call.argument("address");
+                byte[] data = call.argument("data");
+                if (address == null || data == null) {
+                    result.error("invalid_args", "address and data must not be null", null);
+                    return;
+                }
+                Integer maxBufferSize = call.argument("max_buffer_size");
+                Integer delayTime = call.argument("delay_time");
+                PrintJobQueue.Job job = new PrintJobQueue.Job(address, data,
+                        maxBufferSize == null ? 0 : maxBufferSize,
+                        delayTime == null ? 0 : delayTime);
+
+                jobQueue.enqueue(job, new PrintJobQueue.Admission() {
+                    @Override
+                    public void accepted(long jobId) {
+                        mainThread.post(() -> result.success(jobId));
+                    }
 
-                                updatePrintingProgress(data.length, 0);
+                    @Override
+                    public void rejected(String reason) {
+                        mainThread.post(() -> result.error(reason, "too many pending jobs for " + job.address, null));
+                    }
+                });
+                return;
+            }
 
-                                // req get printer status
-                                writeStream.write(data);
-                                writeStream.flush();
+            case "jobStatus": {
+                Number id = call.argument("id");
+                result.success(id == null ? null : jobQueue.status(id.longValue()));
+                return;
+            }
 
-                                updatePrintingProgress(data.length, data.length);
+            case "getJobs": {
+                result.success(jobQueue.list());
+                return;
+            }
 
-                                if (!keepConnected) {
-                                    inputStream.close();
-                                    writeStream.close();
-                                }
+            case "acknowledgeJob": {
+                Number id = call.argument("id");
+                result.success(id != null && jobQueue.acknowledge(id.longValue()));
+                return;
+            }
 
-                                mainThread.post(() -> {
-                                    // COMPLETED
-                                    channel.invokeMethod("didUpdateState", 3);
+            case "encodeImage": {
+                byte[] bytes = call.argument("bytes");
+                Integer dotsPerLine = call.argument("dotsPerLine");
+                encoder.execute(() -> {
+                    try {
+                        byte[] data = ImageRasterizer.encode(bytes, dotsPerLine, rasterMode(call),
+                                dpi(call), newDither(call, dotsPerLine));
+                        mainThread.post(() -> result.success(data));
+                    } catch (Exception e) {
+                        mainThread.post(() -> result.error("encode_error", e.getMessage(), null));
+                    }
+                });
+                return;
+            }
 
-                                    // DONE
-                                    result.success(true);
-                                });
+            case "printImage": {
+                String address = call.argument("address");
+                JobMetrics.Job job = jobMetrics.start(address, "image");
+                executors.execute(address, () -> {
+                    try {
+                        byte[] bytes = call.argument("bytes");
+                        int dotsPerLine = call.argument("dotsPerLine");
+                        boolean keepConnected = call.argument("keep_connected");
+                        Integer bandHeight = call.argument("band_height");
+                        Integer maxBufferSize = call.argument("max_buffer_size");
+                        Integer delayTime = call.argument("delay_time");
+                        Boolean pipelined = call.argument("pipelined");
+                        Integer maxPauseMs = call.argument("max_pause_ms");
+                        // a printer not declared to understand the compact commands gets GS v 0
+                        int mode = rasterMode(call, capabilities.cropRaster(address));
+
+                        // bands are encoded again on a retry, the source is closed after each run
+                        printPayload(address, (writer, progress) -> new RasterPipeline(encoder).print(
+                                ImageRasterizer.bands(bytes, dotsPerLine,
+                                        bandHeight == null ? RasterPipeline.DEFAULT_BAND_HEIGHT : bandHeight,
+                                        mode, dpi(call), newDither(call, dotsPerLine)),
+                                writer, progress),
+                                keepConnected,
+                                maxBufferSize == null ? 0 : maxBufferSize,
+                                delayTime == null ? 0 : delayTime,
+                                pipelined != null && pipelined ? newStatusMonitor(address, maxPauseMs) : null,
+                                job);
+
+                        mainThread.post(() -> result.success(true));
+                    } catch (Exception e) {
+                        mainThread.post(() -> {
+                            result.error("error", e.getMessage(), null);
+                        });
+                    }
+                });
+                return;
+            }
+
+            case "registerFragment": {
+                String id = call.argument("id");
+                byte[] bytes = call.argument("bytes");
+                Boolean template = call.argument("template");
+                try {
+                    fragmentCache.put(id, bytes, template == null || template);
+                    result.success(true);
+                } catch (IllegalArgumentException e) {
+                    result.error("error", e.getMessage(), null);
+                }
+                return;
+            }
+
+            case "registerImageFragment": {
+                String id = call.argument("id");
+                byte[] bytes = call.argument("bytes");
+                Integer dotsPerLine = call.argument("dotsPerLine");
+                encoder.execute(() -> {
+                    try {
+                        byte[] data = ImageRasterizer.encode(bytes, dotsPerLine, rasterMode(call),
+                                dpi(call), newDither(call, dotsPerLine));
+                        fragmentCache.put(id, data, false);
+                        mainThread.post(() -> result.success(data.length));
+                    } catch (Exception e) {
+                        mainThread.post(() -> result.error("encode_error", e.getMessage(), null));
+                    }
+                });
+                return;
+            }
+
+            case "removeFragment": {
+                result.success(fragmentCache.remove(call.argument("id")));
+                return;
+            }
+
+            case "setFragmentCacheBudget": {
+                Number budget = call.argument("budget_bytes");
+                fragmentCache.setBudget(budget == null ? FragmentCache.DEFAULT_BUDGET_BYTES : budget.longValue());
+                result.success(true);
+                return;
+            }
+
+            case "getFragmentCacheStats": {
+                result.success(fragmentCache.stats());
+                return;
+            }
+
+            case "compileFragments": {
+                try {
+                    result.success(compileFragments(call));
+                } catch (FragmentCache.MissingFragmentException e) {
+                    result.error("fragment_missing", e.getMessage(), e.id);
+                }
+                return;
+            }
+
+            case "printFragments": {
+                final byte[] data;
+                try {
+                    data = compileFragments(call);
+                } catch (FragmentCache.MissingFragmentException e) {
+                    result.error("fragment_missing", e.getMessage(), e.id);
+                    return;
+                }
+
+                // CONNECTING
+                channel.invokeMethod("didUpdateState", 1);
+                String address = call.argument("address");
+                JobMetrics.Job job = jobMetrics.start(address, "fragments");
+                executors.execute(address, () -> {
+                    try {
+                        Boolean keepConnected = call.argument("keep_connected");
+                        Integer maxBufferSize = call.argument("max_buffer_size");
+                        Integer delayTime = call.argument("delay_time");
+                        printPayload(address, data, 0, data.length, keepConnected != null && keepConnected,
+                                maxBufferSize == null ? 0 : maxBufferSize,
+                                delayTime == null ? 0 : delayTime, null, job);
+                        mainThread.post(() -> result.success(true));
+                    } catch (Exception e) {
+                        mainThread.post(() -> result.error("error", e.getMessage(), null));
+                    }
+                });
+                return;
+            }
+
+            case "storeGraphic": {
+                String address = call.argument("address");
+                String key = call.argument("key");
+                Boolean nonVolatile = call.argument("non_volatile");
+                if (!EscPosRaster.isValidKey(key)) {
+                    result.error("error", "key must be two printable ASCII characters", null);
+                    return;
+                }
+
+                final int store = nonVolatile == null || nonVolatile ? EscPosRaster.STORE_NV
+                        : EscPosRaster.STORE_DOWNLOAD;
+                executors.execute(address, () -> {
+                    try {
+                        byte[] bytes = call.argument("bytes");
+                        int dotsPerLine = call.argument("dotsPerLine");
+                        Boolean force = call.argument("force");
+                        Boolean keepConnected = call.argument("keep_connected");
+                        Integer maxBufferSize = call.argument("max_buffer_size");
+                        Integer delayTime = call.argument("delay_time");
+
+                        byte[] define = ImageRasterizer.encodeStored(bytes, dotsPerLine, store, key,
+                                newDither(call, dotsPerLine));
+                        String fingerprint = StoredGraphics.fingerprint(define);
+                        boolean upload = (force != null && force)
+                                || !storedGraphics.isStored(address, store, key, fingerprint);
+                        if (upload) {
+                            try {
+                                writePooled(address, define, 0, define.length,
+                                        maxBufferSize == null ? 0 : maxBufferSize,
+                                        delayTime == null ? 0 : delayTime, null, null,
+                                        jobMetrics.start(address, "graphic"));
                             } finally {
-                                if (!keepConnected) {
-                                    bluetoothSocket.close();
-                                    connectedDevices.remove(address);
+                                if (keepConnected == null || !keepConnected) {
+                                    connectionPool.release(address);
                                 }
                             }
-                        } catch (Exception e) {
-                            mainThread.post(() -> {
-                                result.error("error", e.getMessage(), null);
-                            });
+                            storedGraphics.record(address, store, key, fingerprint);
                         }
+
+                        Map<String, Object> data = new HashMap<>();
+                        data.put("uploaded", upload);
+                        data.put("bytes", upload ? define.length : 0);
+                        data.put("command", EscPosRaster.printStored(store, key));
+                        mainThread.post(() -> result.success(data));
+                    } catch (Exception e) {
+                        mainThread.post(() -> result.error("error", e.getMessage(), null));
                     }
-                }).start();
+                });
+                return;
+            }
+
+            case "getStoredGraphics": {
+                result.success(storedGraphics.list(call.argument("address")));
+                return;
+            }
+
+            case "forgetStoredGraphics": {
+                storedGraphics.forget(call.argument("address"));
+                result.success(true);
+                return;
+            }
+
+            case "setPrinterCapabilities": {
+                String address = call.argument("address");
+                Boolean cropRaster = call.argument(PrinterCapabilities.CROP_RASTER);
+                if (address == null) {
+                    result.error("invalid_args", "address is required", null);
+                    return;
+                }
+                capabilities.set(address, cropRaster != null && cropRaster);
+                result.success(true);
+                return;
+            }
+
+            case "getPrinterCapabilities": {
+                result.success(capabilities.get(call.argument("address")));
+                return;
+            }
+
+            case "readStatus": {
+                String address = call.argument("address");
+                executors.execute(address, () -> {
+                    try {
+                        Integer type = call.argument("type");
+                        Integer timeout = call.argument("timeout");
+                        PrinterTransport transport = connectionPool.acquire(address);
+                        // DLE EOT n, the printer answers with a single status byte
+                        byte[] response = statusReader(address, transport).request(
+                                new byte[] { 0x10, 0x04, (byte) (type == null ? 1 : type) },
+                                BluetoothStreamReader.fixedLength(1),
+                                timeout == null ? 2000 : timeout);
+                        mainThread.post(() -> result.success(response == null ? null : response[0] & 0xFF));
+                    } catch (Exception e) {
+                        mainThread.post(() -> result.error("error", e.getMessage(), null));
+                    }
+                });
+                return;
+            }
+
+            case "getDiscoveredDevices": {
+                result.success(deviceCache.snapshot());
+                return;
+            }
+
+            case "getConnectAttempts": {
+                String address = call.argument("address");
+                Map<String, Object> data = new HashMap<>();
+                data.put("remembered", connectStrategies.remembered(address));
+                data.put("attempts", connectStrategies.lastAttempts(address));
+                result.success(data);
+                return;
+            }
+
+            case "setPreferredPrinters": {
+                List<String> addresses = call.argument("addresses");
+                warmer.setPreferred(addresses == null ? new ArrayList<>() : addresses);
+                result.success(true);
+                return;
+            }
+
+            case "getPreferredPrinters": {
+                result.success(warmer.preferred());
+                return;
+            }
+
+            case "getConnectionPoolStats": {
+                result.success(connectionPool.stats());
+                return;
+            }
+
+            case "getExecutorMetrics": {
+                result.success(executors.metrics());
+                return;
+            }
+
+            case "getMetrics": {
+                result.success(jobMetrics.snapshot());
+                return;
+            }
+
+            case "resetMetrics": {
+                jobMetrics.reset();
+                result.success(true);
+                return;
+            }
+
+            case "getRasterStats": {
+                result.success(RasterCompactor.stats());
+                return;
+            }
+
+            case "getReceiveStats": {
+                Map<String, Object> stats = ReceiveBuffer.stats();
+                stats.put("delivery", readAggregator.stats());
+                result.success(stats);
+                return;
+            }
+
+            case "configureReadChannel": {
+                Integer windowMs = call.argument("window_ms");
+                Integer windowBytes = call.argument("window_bytes");
+                Integer maxPendingBytes = call.argument("max_pending_bytes");
+                String overflow = call.argument("overflow");
+                try {
+                    readAggregator.configure(
+                            windowMs == null ? ReadAggregator.DEFAULT_WINDOW_MS : windowMs,
+                            windowBytes == null ? ReadAggregator.DEFAULT_WINDOW_BYTES : windowBytes,
+                            maxPendingBytes == null ? ReadAggregator.DEFAULT_MAX_PENDING_BYTES : maxPendingBytes,
+                            overflow == null ? ReadAggregator.DROP_OLDEST : overflow);
+                    readWindowMs = windowMs == null ? ReadAggregator.DEFAULT_WINDOW_MS : windowMs;
+                    readWindowBytes = windowBytes == null ? ReadAggregator.DEFAULT_WINDOW_BYTES : windowBytes;
+                    readMaxPendingBytes = maxPendingBytes == null
+                            ? ReadAggregator.DEFAULT_MAX_PENDING_BYTES : maxPendingBytes;
+                    readOverflow = overflow == null ? ReadAggregator.DROP_OLDEST : overflow;
+                    result.success(true);
+                } catch (IllegalArgumentException e) {
+                    result.error("error", e.getMessage(), null);
+                }
                 return;
             }
 
@@ -523,13 +1246,51 @@ public class FlutterBluetoothPrinterPlugin implements FlutterPlugin, ActivityAwa
                 stopScan(result);
                 break;
             case "connectKotlin":
-                connect(result, call.argument("deviceId"), call.argument("serviceUUID"));
+                openStream(result, DEFAULT_SESSION, call.argument("deviceId"), call.argument("serviceUUID"),
+                        call.argument("timeout"), readAggregator);
+                break;
+            case "cancelConnectKotlin":
+                result.success(streamSessions.cancel(DEFAULT_SESSION));
                 break;
             case "disconnectKotlin":
-                disconnect(result);
+                streamSessions.close(DEFAULT_SESSION, completion(result));
                 break;
-            case "writeKotlin":
-                write(result, call.argument("message"));
+            case "writeKotlin": {
+                String message = call.argument("message");
+                streamSessions.write(DEFAULT_SESSION, message.getBytes(), completion(result));
+                break;
+            }
+            case "openSessionKotlin": {
+                final String session = call.argument("session");
+                if (session == null) {
+                    result.error("invalid_args", "session must not be null", null);
+                    break;
+                }
+                ReadAggregator reads = new ReadAggregator(mainThread::postDelayed,
+                        data -> publishSessionData(session, data));
+                reads.configure(readWindowMs, readWindowBytes, readMaxPendingBytes, readOverflow);
+                openStream(result, session, call.argument("deviceId"), call.argument("serviceUUID"),
+                        call.argument("timeout"), reads);
+                break;
+            }
+            case "writeSessionKotlin": {
+                String session = call.argument("session");
+                byte[] data = call.argument("data");
+                if (session == null || data == null) {
+                    result.error("invalid_args", "session and data must not be null", null);
+                    break;
+                }
+                streamSessions.write(session, data, completion(result));
+                break;
+            }
+            case "cancelSessionKotlin":
+                result.success(streamSessions.cancel(call.argument("session")));
+                break;
+            case "closeSessionKotlin":
+                streamSessions.close(call.argument("session"), completion(result));
+                break;
+            case "getSessionsKotlin":
+                result.success(streamSessions.list());
                 break;
 
             // KOTLIN ENDS HERE
@@ -541,55 +1302,80 @@ public class FlutterBluetoothPrinterPlugin implements FlutterPlugin, ActivityAwa
     }
 
     // START KOTLIN HERE
-    private void write(MethodChannel.Result result, String message) {
-        if (thread != null) {
-            thread.write(message.getBytes());
-            result.success(true);
-        } else {
-            result.error("write_impossible", "could not send message to unconnected device", null);
+    // the RFCOMM handshake blocks for seconds, StreamSessions runs it on the device's executor
+    private void openStream(MethodChannel.Result result, String session, String deviceId, String serviceUuid,
+            Integer timeoutMs, ReadAggregator reads) {
+        if (deviceId == null || serviceUuid == null) {
+            result.error("invalid_args", "deviceId and serviceUuid must not be null", null);
+            return;
         }
-    }
-
-    private void disconnect(MethodChannel.Result result) {
-        try {
-            device = null;
-            if (thread != null) {
-                thread.interrupt();
-                thread = null;
+        if (!TcpTransport.isTcp(deviceId)) {
+            try {
+                UUID.fromString(serviceUuid);
+            } catch (IllegalArgumentException e) {
+                result.error("invalid_uuid", "invalid service UUID: " + serviceUuid, null);
+                return;
             }
-            if (socket != null) {
-                socket.close();
-                socket = null;
+            if (!BluetoothAdapter.checkBluetoothAddress(deviceId)) {
+                result.error("invalid_args", "invalid device address " + deviceId, null);
+                return;
             }
-            publishBluetoothStatus(0);
-            result.success(true);
-        } catch (IOException e) {
-            result.error("disconnect_failed", e.getMessage(), null);
         }
+
+        streamSessions.open(session, deviceId, serviceUuid,
+                timeoutMs == null ? StreamSessions.DEFAULT_CONNECT_TIMEOUT_MS : timeoutMs, reads,
+                completion(result));
     }
 
-    private void connect(MethodChannel.Result result, String deviceId, String serviceUuid) {
-        try {
-            if (deviceId == null || serviceUuid == null) {
-                result.error("invalid_args", "deviceId and serviceUuid must not be null", null);
-                return;
-            }
-
-            publishBluetoothStatus(1);
-            device = ba.getRemoteDevice(deviceId);
-            socket = device.createRfcommSocketToServiceRecord(UUID.fromString(serviceUuid));
-            socket.connect();
-            thread = new ConnectedThread(socket);
-            thread.start();
-            publishBluetoothStatus(2);
-            result.success(true);
-        } catch (IOException e) {
-            publishBluetoothStatus(0);
-            result.error("connection_failed", "could not connect to device " + deviceId + ": " + e.getMessage(), null);
-        } catch (IllegalArgumentException e) {
-            publishBluetoothStatus(0);
-            result.error("invalid_uuid", "invalid service UUID: " + serviceUuid, null);
+    // runs on the device's executor, a tcp:// address ignores the service UUID
+    private StreamSessions.Handshake dialStream(String address, String serviceUuid) throws IOException {
+        if (TcpTransport.isTcp(address)) {
+            final TcpTransport.Connect connect = new TcpTransport.Connect(address);
+            return new StreamSessions.Handshake() {
+                @Override
+                public PrinterTransport connect(long timeoutMs) throws IOException {
+                    return connect.finish(timeoutMs);
+                }
+
+                @Override
+                public void abort() {
+                    connect.abort();
+                }
+            };
         }
+
+        final BluetoothSocket socket = ba.getRemoteDevice(address)
+                .createRfcommSocketToServiceRecord(UUID.fromString(serviceUuid));
+        return new StreamSessions.Handshake() {
+            @Override
+            public PrinterTransport connect(long timeoutMs) throws IOException {
+                // RFCOMM has no connect timeout, abort() closes the socket instead
+                socket.connect();
+                return new BluetoothTransport(socket);
+            }
+
+            @Override
+            public void abort() {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+            }
+        };
+    }
+
+    private StreamSessions.Completion completion(MethodChannel.Result result) {
+        return new StreamSessions.Completion() {
+            @Override
+            public void success(Object value) {
+                mainThread.post(() -> result.success(value));
+            }
+
+            @Override
+            public void error(String code, String message) {
+                mainThread.post(() -> result.error(code, message, null));
+            }
+        };
     }
 
     private void startScan(MethodChannel.Result result) {
@@ -693,8 +1479,7 @@ public class FlutterBluetoothPrinterPlugin implements FlutterPlugin, ActivityAwa
         @Override
         public void onReceive(Context context, Intent intent) {
             if (BluetoothDevice.ACTION_FOUND.equals(intent.getAction())) {
-                BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
-                publishBluetoothDevice(device);
+                onDeviceFound(intent);
             }
         }
     };
@@ -712,21 +1497,81 @@ public class FlutterBluetoothPrinterPlugin implements FlutterPlugin, ActivityAwa
         }
     }
 
-    private void publishBluetoothDevice(BluetoothDevice device) {
-        Log.i("device_discovery", device.getAddress());
+    // the default session keeps the plain status ints of the single connection API
+    private void publishSessionStatus(String session, String address, int status) {
+        if (DEFAULT_SESSION.equals(session)) {
+            publishBluetoothStatus(status);
+        } else if (bluetoothStatusChannelSink != null) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("session", session);
+            data.put("address", address);
+            data.put("status", status);
+            bluetoothStatusChannelSink.success(data);
+        }
+    }
+
+    private void publishSessionData(String session, byte[] data) {
+        if (sessionReadSink != null) {
+            Map<String, Object> event = new HashMap<>();
+            event.put("session", session);
+            event.put("data", data);
+            sessionReadSink.success(event);
+        }
+    }
+
+    private void publishBluetoothDevice(String address, String name) {
         if (bluetoothDeviceChannelSink != null) {
             HashMap<String, String> map = new HashMap<>();
-            map.put("address", device.getAddress());
-            map.put("name", device.getName());
+            map.put("address", address);
+            map.put("name", name);
             bluetoothDeviceChannelSink.success(map);
         }
     }
 
     // KOTLIN ENDS HERE
 
+    private BluetoothStreamReader statusReader(String address, PrinterTransport transport) {
+        synchronized (statusReaders) {
+            // readers of sockets that have since been closed
+            final Iterator<BluetoothStreamReader> readers = statusReaders.values().iterator();
+            while (readers.hasNext()) {
+                if (readers.next().isClosed()) {
+                    readers.remove();
+                }
+            }
+
+            BluetoothStreamReader reader = statusReaders.get(address);
+            if (reader == null || !reader.isAttachedTo(transport)) {
+                reader = new BluetoothStreamReader(transport, executors,
+                        data -> {
+                            final StatusMonitor monitor;
+                            synchronized (statusMonitors) {
+                                monitor = statusMonitors.get(address);
+                            }
+                            if (monitor != null) {
+                                monitor.onBytes(data, data.length);
+                            }
+                        },
+                        e -> Log.w("readStatus", "status reader for " + address + " stopped", e));
+                statusReaders.put(address, reader);
+            }
+            return reader;
+        }
+    }
+
     @Override
     public void onDetachedFromEngine(@NonNull FlutterPluginBinding binding) {
         channel.setMethodCallHandler(null);
+        writeChannel.setMessageHandler(null);
+        jobQueue.shutdown();
+        connectionPool.shutdown();
+        synchronized (statusReaders) {
+            statusReaders.clear();
+        }
+        // a handshake in progress would otherwise hold its executor thread until it times out
+        streamSessions.shutdown();
+        executors.shutdown();
+        encoder.shutdownNow();
         flutterPluginBinding.getApplicationContext().unregisterReceiver(discoveryReceiver);
         flutterPluginBinding.getApplicationContext().unregisterReceiver(stateReceiver);
 
@@ -743,20 +1588,67 @@ public class FlutterBluetoothPrinterPlugin implements FlutterPlugin, ActivityAwa
         activity = binding.getActivity();
         pluginActivity = binding.getActivity(); // Add this for Kotlin part
         binding.addRequestPermissionsResultListener(this);
+        registerLifecycleCallbacks(binding.getActivity());
+    }
+
+    private void registerLifecycleCallbacks(Activity activity) {
+        lifecycleCallbacks = new Application.ActivityLifecycleCallbacks() {
+            @Override
+            public void onActivityResumed(Activity resumed) {
+                if (resumed == activity) {
+                    warmer.warmAll(PrinterWarmer.TRIGGER_RESUME);
+                }
+            }
+
+            @Override
+            public void onActivityCreated(Activity a, Bundle savedInstanceState) {
+            }
+
+            @Override
+            public void onActivityStarted(Activity a) {
+            }
+
+            @Override
+            public void onActivityPaused(Activity a) {
+            }
+
+            @Override
+            public void onActivityStopped(Activity a) {
+            }
+
+            @Override
+            public void onActivitySaveInstanceState(Activity a, Bundle outState) {
+            }
+
+            @Override
+            public void onActivityDestroyed(Activity a) {
+            }
+        };
+        activity.getApplication().registerActivityLifecycleCallbacks(lifecycleCallbacks);
+    }
+
+    private void unregisterLifecycleCallbacks() {
+        if (lifecycleCallbacks != null && activity != null) {
+            activity.getApplication().unregisterActivityLifecycleCallbacks(lifecycleCallbacks);
+        }
+        lifecycleCallbacks = null;
     }
 
     @Override
     public void onDetachedFromActivityForConfigChanges() {
-
+        unregisterLifecycleCallbacks();
     }
 
     @Override
     public void onReattachedToActivityForConfigChanges(@NonNull ActivityPluginBinding binding) {
-
+        activity = binding.getActivity();
+        pluginActivity = binding.getActivity();
+        registerLifecycleCallbacks(binding.getActivity());
     }
 
     @Override
     public void onDetachedFromActivity() {
+        unregisterLifecycleCallbacks();
         activity = null;
     }
 
@@ -808,6 +1700,11 @@ public class FlutterBluetoothPrinterPlugin implements FlutterPlugin, ActivityAwa
     @Override
     public void onListen(Object arguments, EventChannel.EventSink events) {
         sinkList.put(arguments, events);
+        // a new listener starts from everything seen so far, later batches only carry changes
+        final List<Map<String, Object>> known = deviceCache.snapshot();
+        if (!known.isEmpty()) {
+            events.success(discoveryBatch(known));
+        }
         startDiscovery(true);
     }
 
@@ -0,0 +1,207 @@
+package id.flutter.plugins;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-encoded ESC/POS fragments, such as logos and static headers, registered once and spliced
+ * into jobs by id.
+ *
+ * A fragment may contain {@code {{name}}} placeholders. They are located when the fragment is
+ * registered, so compiling a job is just sizing the result and a few array copies. Fragments
+ * are evicted least recently used first once their total size exceeds the memory budget.
+ */
+class FragmentCache {
+    static final long DEFAULT_BUDGET_BYTES = 1024 * 1024;
+
+    static class MissingFragmentException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final String id;
+
+        MissingFragmentException(String id) {
+            super("fragment not cached: " + id);
+            this.id = id;
+        }
+    }
+
+    private static class Fragment {
+        final byte[] data;
+        // placeholder i covers data[starts[i], ends[i])
+        final int[] starts;
+        final int[] ends;
+        final String[] names;
+
+        Fragment(byte[] data, int[] starts, int[] ends, String[] names) {
+            this.data = data;
+            this.starts = starts;
+            this.ends = ends;
+            this.names = names;
+        }
+    }
+
+    private final Map<String, Fragment> fragments = new LinkedHashMap<>(16, 0.75f, true);
+    private long budgetBytes;
+    private long sizeBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    FragmentCache() {
+        this(DEFAULT_BUDGET_BYTES);
+    }
+
+    FragmentCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Caches {@code data} under {@code id}, replacing any previous fragment. Placeholders are
+     * only looked for in templates, raster data may contain the same bytes by chance.
+     */
+    synchronized void put(String id, byte[] data, boolean template) {
+        if (data.length > budgetBytes) {
+            throw new IllegalArgumentException("fragment " + id + " is larger than the cache budget");
+        }
+
+        final List<int[]> spans = new ArrayList<>();
+        for (int i = 0; template && i + 4 < data.length; i++) {
+            if (data[i] != '{' || data[i + 1] != '{') {
+                continue;
+            }
+
+            int end = i + 2;
+            while (end < data.length && isNameByte(data[end])) {
+                end++;
+            }
+            if (end > i + 2 && end + 1 < data.length && data[end] == '}' && data[end + 1] == '}') {
+                spans.add(new int[] { i, end + 2 });
+                i = end + 1;
+            }
+        }
+
+        final int[] starts = new int[spans.size()];
+        final int[] ends = new int[spans.size()];
+        final String[] names = new String[spans.size()];
+        for (int i = 0; i < spans.size(); i++) {
+            starts[i] = spans.get(i)[0];
+            ends[i] = spans.get(i)[1];
+            names[i] = new String(data, starts[i] + 2, ends[i] - starts[i] - 4, Charset.forName("US-ASCII"));
+        }
+
+        final Fragment previous = fragments.put(id, new Fragment(data, starts, ends, names));
+        if (previous != null) {
+            sizeBytes -= previous.data.length;
+        }
+        sizeBytes += data.length;
+        trim();
+    }
+
+    synchronized boolean remove(String id) {
+        final Fragment removed = fragments.remove(id);
+        if (removed == null) {
+            return false;
+        }
+        sizeBytes -= removed.data.length;
+        return true;
+    }
+
+    synchronized boolean contains(String id) {
+        return fragments.containsKey(id);
+    }
+
+    synchronized void setBudget(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        trim();
+    }
+
+    /**
+     * Assembles a job. Every part is either a fragment id ({@link String}) or literal bytes
+     * ({@code byte[]}); placeholders take their value from {@code variables}, unknown ones
+     * are left empty.
+     */
+    synchronized byte[] compile(List<Object> parts, Map<String, byte[]> variables) throws MissingFragmentException {
+        final Object[] resolved = new Object[parts.size()];
+        int size = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            final Object part = parts.get(i);
+            if (part instanceof byte[]) {
+                resolved[i] = part;
+                size += ((byte[]) part).length;
+                continue;
+            }
+
+            final Fragment fragment = fragments.get((String) part);
+            if (fragment == null) {
+                misses++;
+                throw new MissingFragmentException((String) part);
+            }
+            hits++;
+            resolved[i] = fragment;
+            size += fragment.data.length;
+            for (int p = 0; p < fragment.names.length; p++) {
+                final byte[] value = variables.get(fragment.names[p]);
+                size += (value == null ? 0 : value.length) - (fragment.ends[p] - fragment.starts[p]);
+            }
+        }
+
+        final byte[] out = new byte[size];
+        int offset = 0;
+        for (Object part : resolved) {
+            if (part instanceof byte[]) {
+                final byte[] bytes = (byte[]) part;
+                System.arraycopy(bytes, 0, out, offset, bytes.length);
+                offset += bytes.length;
+                continue;
+            }
+
+            final Fragment fragment = (Fragment) part;
+            int from = 0;
+            for (int p = 0; p < fragment.names.length; p++) {
+                System.arraycopy(fragment.data, from, out, offset, fragment.starts[p] - from);
+                offset += fragment.starts[p] - from;
+                final byte[] value = variables.get(fragment.names[p]);
+                if (value != null) {
+                    System.arraycopy(value, 0, out, offset, value.length);
+                    offset += value.length;
+                }
+                from = fragment.ends[p];
+            }
+            System.arraycopy(fragment.data, from, out, offset, fragment.data.length - from);
+            offset += fragment.data.length - from;
+        }
+        return out;
+    }
+
+    synchronized Map<String, Object> stats() {
+        final Map<String, Object> data = new HashMap<>();
+        data.put("count", fragments.size());
+        data.put("sizeBytes", sizeBytes);
+        data.put("budgetBytes", budgetBytes);
+        data.put("hits", hits);
+        data.put("misses", misses);
+        data.put("evictions", evictions);
+        data.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        data.put("ids", new ArrayList<>(fragments.keySet()));
+        return data;
+    }
+
+    // called with the lock held, access ordered so the first entries are the least recently used
+    private void trim() {
+        final Iterator<Fragment> it = fragments.values().iterator();
+        while (sizeBytes > budgetBytes && it.hasNext()) {
+            sizeBytes -= it.next().data.length;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private static boolean isNameByte(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '_' || b == '.';
+    }
+}
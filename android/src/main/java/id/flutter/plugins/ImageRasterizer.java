@@ -0,0 +1,218 @@
+package id.flutter.plugins;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Decodes a PNG/JPEG image, scales it to the printer width and encodes it into a ready to send
+ * ESC/POS raster command. The {@link Dither} is consumed by the call, it must be created for
+ * {@code dotsPerLine} pixels.
+ */
+class ImageRasterizer {
+    private ImageRasterizer() {
+    }
+
+    static byte[] encode(byte[] image, int dotsPerLine, int mode, int dpi, Dither dither) {
+        final Bitmap bitmap = decodeScaled(image, dotsPerLine);
+        try {
+            final int width = bitmap.getWidth();
+            final int height = bitmap.getHeight();
+            final int widthBytes = EscPosRaster.widthBytes(width);
+
+            if (mode == EscPosRaster.MODE_RASTER_COMPACT) {
+                final byte[] bits = new byte[widthBytes * height];
+                packRows(bitmap, dither, bits, 0);
+                final byte[] out = new byte[RasterCompactor.maxSize(widthBytes, height)];
+                return Arrays.copyOf(out, RasterCompactor.compact(bits, 0, widthBytes, height, dpi, out, 0));
+            }
+
+            final byte[] out = new byte[EscPosRaster.commandSize(mode, widthBytes, height)];
+            final int offset = EscPosRaster.writeHeader(mode, out, 0, widthBytes, height);
+            EscPosRaster.writeTrailer(mode, out, packRows(bitmap, dither, out, offset));
+            return out;
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /** Encodes the command defining the image under {@code key} in the printer's graphics store. */
+    static byte[] encodeStored(byte[] image, int dotsPerLine, int store, String key, Dither dither) {
+        final Bitmap bitmap = decodeScaled(image, dotsPerLine);
+        try {
+            final int widthBytes = EscPosRaster.widthBytes(bitmap.getWidth());
+            final int height = bitmap.getHeight();
+            if (height > EscPosRaster.MAX_STORED_HEIGHT) {
+                throw new IllegalArgumentException("image is " + height + " dots high, stored graphics allow "
+                        + EscPosRaster.MAX_STORED_HEIGHT);
+            }
+
+            final byte[] out = new byte[EscPosRaster.storedHeaderSize(widthBytes, height) + widthBytes * height];
+            packRows(bitmap, dither, out, EscPosRaster.writeStoreHeader(store, out, 0, key, widthBytes, height));
+            return out;
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    private static int packRows(Bitmap bitmap, Dither dither, byte[] out, int offset) {
+        final int width = bitmap.getWidth();
+        final int widthBytes = EscPosRaster.widthBytes(width);
+        final int[] row = new int[width];
+        for (int y = 0; y < bitmap.getHeight(); y++) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            dither.packRow(row, 0, out, offset);
+            offset += widthBytes;
+        }
+        return offset;
+    }
+
+    /**
+     * Band source for {@link RasterPipeline}, only the source rows of the band being encoded
+     * are ever decoded.
+     */
+    static RasterPipeline.BandSource bands(byte[] image, int dotsPerLine, int bandHeight, int mode, int dpi,
+            Dither dither) throws IOException {
+        return new RegionBandSource(image, dotsPerLine, bandHeight, mode, dpi, dither);
+    }
+
+    private static class RegionBandSource implements RasterPipeline.BandSource {
+        private final BitmapRegionDecoder decoder;
+        private final BitmapFactory.Options options = new BitmapFactory.Options();
+        private final Rect region = new Rect(0, 0, 0, 0);
+        private final int mode;
+        private final int dpi;
+        // shared by all bands, they are encoded one after the other
+        private final Dither dither;
+        private final int width;
+        private final int widthBytes;
+        private final int height;
+        private final int bandHeight;
+        private final int[] row;
+        // packed band in compact mode, cut into strips afterwards
+        private final byte[] bits;
+
+        RegionBandSource(byte[] image, int dotsPerLine, int bandHeight, int mode, int dpi, Dither dither)
+                throws IOException {
+            this.decoder = BitmapRegionDecoder.newInstance(image, 0, image.length, false);
+            this.mode = mode;
+            this.dpi = dpi;
+            this.dither = dither;
+            this.width = dotsPerLine;
+            this.widthBytes = EscPosRaster.widthBytes(dotsPerLine);
+            this.height = Math.max(1, Math.round((float) decoder.getHeight() * dotsPerLine / decoder.getWidth()));
+            this.bandHeight = Math.max(1, bandHeight);
+            this.row = new int[dotsPerLine];
+            this.bits = mode == EscPosRaster.MODE_RASTER_COMPACT ? new byte[widthBytes * this.bandHeight] : null;
+
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            options.inSampleSize = 1;
+            while (decoder.getWidth() / (options.inSampleSize * 2) >= dotsPerLine) {
+                options.inSampleSize *= 2;
+            }
+        }
+
+        private int rowsOf(int index) {
+            return Math.min(bandHeight, height - index * bandHeight);
+        }
+
+        @Override
+        public int bandCount() {
+            return (height + bandHeight - 1) / bandHeight;
+        }
+
+        @Override
+        public int maxBandSize() {
+            return EscPosRaster.commandSize(mode, widthBytes, Math.min(bandHeight, height));
+        }
+
+        @Override
+        public int totalSize() {
+            int total = 0;
+            for (int i = 0; i < bandCount(); i++) {
+                total += EscPosRaster.commandSize(mode, widthBytes, rowsOf(i));
+            }
+            return total;
+        }
+
+        @Override
+        public int encodeBand(int index, byte[] out) {
+            final int top = index * bandHeight;
+            final int rows = rowsOf(index);
+            final int srcHeight = decoder.getHeight();
+            final int srcTop = (int) ((long) top * srcHeight / height);
+            final int srcBottom = Math.max(srcTop + 1,
+                    Math.min(srcHeight, (int) (((long) (top + rows) * srcHeight + height - 1) / height)));
+
+            region.set(0, srcTop, decoder.getWidth(), srcBottom);
+            final Bitmap decoded = decoder.decodeRegion(region, options);
+            if (decoded == null) {
+                throw new IllegalArgumentException("unable to decode image");
+            }
+
+            final Bitmap band = Bitmap.createScaledBitmap(decoded, width, rows, true);
+            if (band != decoded) {
+                decoded.recycle();
+            }
+
+            try {
+                if (bits != null) {
+                    packRows(band, dither, bits, 0);
+                    return RasterCompactor.compact(bits, 0, widthBytes, rows, dpi, out, 0);
+                }
+
+                int offset = EscPosRaster.writeHeader(mode, out, 0, widthBytes, rows);
+                for (int y = 0; y < rows; y++) {
+                    band.getPixels(row, 0, width, 0, y, width, 1);
+                    dither.packRow(row, 0, out, offset);
+                    offset += widthBytes;
+                }
+                return EscPosRaster.writeTrailer(mode, out, offset);
+            } finally {
+                band.recycle();
+            }
+        }
+
+        @Override
+        public void close() {
+            decoder.recycle();
+        }
+    }
+
+    static Bitmap decodeScaled(byte[] image, int dotsPerLine) {
+        final BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(image, 0, image.length, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IllegalArgumentException("unsupported image format");
+        }
+
+        // let the decoder drop whole pixels first, it is far cheaper than scaling afterwards
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inSampleSize = 1;
+        while (bounds.outWidth / (options.inSampleSize * 2) >= dotsPerLine) {
+            options.inSampleSize *= 2;
+        }
+
+        final Bitmap decoded = BitmapFactory.decodeByteArray(image, 0, image.length, options);
+        if (decoded == null) {
+            throw new IllegalArgumentException("unable to decode image");
+        }
+
+        if (decoded.getWidth() == dotsPerLine) {
+            return decoded;
+        }
+
+        final int height = Math.max(1, Math.round((float) decoded.getHeight() * dotsPerLine / decoded.getWidth()));
+        final Bitmap scaled = Bitmap.createScaledBitmap(decoded, dotsPerLine, height, true);
+        if (scaled != decoded) {
+            decoded.recycle();
+        }
+        return scaled;
+    }
+}
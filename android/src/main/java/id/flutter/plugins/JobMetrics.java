@@ -0,0 +1,196 @@
+package id.flutter.plugins;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timing of every print job and rolling per printer percentiles.
+ *
+ * A {@link Job} is started when the request arrives, so its queue time covers the wait for the
+ * printer's serial executor, and is filled in by the thread writing it. Percentiles are exact
+ * over the last {@link #WINDOW} jobs of each printer, sorting that few samples on demand is
+ * cheaper than keeping buckets up to date on every job.
+ */
+class JobMetrics {
+    static final int WINDOW = 256;
+    private static final int RECENT = 32;
+
+    interface Listener {
+        void onJob(Map<String, Object> job);
+    }
+
+    /** One job, written by the thread running it only. */
+    static class Job {
+        final String address;
+        final String path;
+        final long submitted = System.nanoTime();
+        long started;
+        long connectNanos;
+        boolean reused = true;
+        int retries;
+        long bytes;
+        long writeNanos;
+        long flushNanos;
+
+        Job(String address, String path) {
+            this.address = address;
+            this.path = path;
+        }
+
+        void begin() {
+            if (started == 0) {
+                started = System.nanoTime();
+            }
+        }
+    }
+
+    // ring buffer of the latest WINDOW samples
+    private static class Window {
+        final long[] samples = new long[WINDOW];
+        int count;
+        int next;
+
+        void add(long value) {
+            samples[next] = value;
+            next = (next + 1) % WINDOW;
+            count = Math.min(count + 1, WINDOW);
+        }
+
+        Map<String, Object> percentiles() {
+            final long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            final Map<String, Object> data = new HashMap<>();
+            data.put("count", count);
+            data.put("p50", rank(sorted, 50));
+            data.put("p95", rank(sorted, 95));
+            data.put("p99", rank(sorted, 99));
+            data.put("max", count == 0 ? 0 : sorted[count - 1]);
+            return data;
+        }
+
+        // nearest rank
+        private static long rank(long[] sorted, int percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            final int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, index)];
+        }
+    }
+
+    private static class Printer {
+        long jobs;
+        long failures;
+        long bytes;
+        final Window queueMs = new Window();
+        final Window connectMs = new Window();
+        final Window writeMs = new Window();
+        final Window totalMs = new Window();
+        final Window bytesPerSecond = new Window();
+
+        Map<String, Object> toMap() {
+            final Map<String, Object> data = new HashMap<>();
+            data.put("jobs", jobs);
+            data.put("failures", failures);
+            data.put("bytes", bytes);
+            data.put("queueMs", queueMs.percentiles());
+            data.put("connectMs", connectMs.percentiles());
+            data.put("writeMs", writeMs.percentiles());
+            data.put("totalMs", totalMs.percentiles());
+            data.put("bytesPerSecond", bytesPerSecond.percentiles());
+            return data;
+        }
+    }
+
+    private final Listener listener;
+    // guarded by this
+    private final Map<String, Printer> printers = new LinkedHashMap<>();
+    private final ArrayDeque<Map<String, Object>> recent = new ArrayDeque<>();
+
+    JobMetrics(Listener listener) {
+        this.listener = listener;
+    }
+
+    Job start(String address, String path) {
+        return new Job(address, path);
+    }
+
+    /** Records {@code job}, {@code error} is null when it succeeded. */
+    void finish(Job job, Exception error) {
+        final long end = System.nanoTime();
+        final long started = job.started == 0 ? end : job.started;
+        final long queueMs = TimeUnit.NANOSECONDS.toMillis(started - job.submitted);
+        final long connectMs = TimeUnit.NANOSECONDS.toMillis(job.connectNanos);
+        final long writeMs = TimeUnit.NANOSECONDS.toMillis(job.writeNanos);
+        final long totalMs = TimeUnit.NANOSECONDS.toMillis(end - job.submitted);
+        final long bytesPerSecond = job.writeNanos == 0 ? 0 : job.bytes * 1000000000L / job.writeNanos;
+
+        final Map<String, Object> data = new HashMap<>();
+        data.put("address", job.address);
+        data.put("path", job.path);
+        data.put("success", error == null);
+        data.put("error", error == null ? null : error.getMessage() == null ? error.toString() : error.getMessage());
+        data.put("queueMs", queueMs);
+        data.put("connectMs", connectMs);
+        data.put("reused", job.reused);
+        data.put("retries", job.retries);
+        data.put("bytes", job.bytes);
+        data.put("writeMs", writeMs);
+        data.put("flushMs", TimeUnit.NANOSECONDS.toMillis(job.flushNanos));
+        data.put("bytesPerSecond", bytesPerSecond);
+        data.put("totalMs", totalMs);
+        data.put("finishedAt", System.currentTimeMillis());
+
+        synchronized (this) {
+            Printer printer = printers.get(job.address);
+            if (printer == null) {
+                printer = new Printer();
+                printers.put(job.address, printer);
+            }
+
+            printer.jobs++;
+            if (error != null) {
+                printer.failures++;
+            } else {
+                // failed jobs would drag the write and throughput figures towards zero
+                printer.bytes += job.bytes;
+                printer.writeMs.add(writeMs);
+                printer.bytesPerSecond.add(bytesPerSecond);
+            }
+            printer.queueMs.add(queueMs);
+            printer.connectMs.add(connectMs);
+            printer.totalMs.add(totalMs);
+
+            recent.addLast(data);
+            if (recent.size() > RECENT) {
+                recent.removeFirst();
+            }
+        }
+
+        listener.onJob(data);
+    }
+
+    synchronized Map<String, Object> snapshot() {
+        final Map<String, Object> byPrinter = new HashMap<>();
+        for (Map.Entry<String, Printer> entry : printers.entrySet()) {
+            byPrinter.put(entry.getKey(), entry.getValue().toMap());
+        }
+
+        final List<Map<String, Object>> jobs = new ArrayList<>(recent);
+        final Map<String, Object> data = new HashMap<>();
+        data.put("printers", byPrinter);
+        data.put("recent", jobs);
+        return data;
+    }
+
+    synchronized void reset() {
+        printers.clear();
+        recent.clear();
+    }
+}
@@ -0,0 +1,441 @@
+package id.flutter.plugins;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Per printer queue of print jobs that are accepted while the socket is busy.
+ *
+ * Each printer holds at most {@link #MAX_QUEUED_JOBS} admitted jobs. Further submissions are
+ * parked (up to {@link #MAX_WAITING_JOBS}) and only acknowledged once a slot frees up, so a
+ * burst slows the caller down instead of dropping tickets. Adjacent jobs with the same write
+ * options are coalesced into one socket write of at most {@link #MAX_BATCH_BYTES}.
+ *
+ * Admitted and parked jobs are persisted to {@code storeDir} until they finished printing and
+ * are queued again under their ids when the queue is created again. A job's file is marked
+ * before its write starts, a job that was printing when the process died may already be partly
+ * on paper, so it is restored as failed instead of being printed twice. Its file is kept as a
+ * failed marker, surviving further restarts, until the app calls {@link #acknowledge}.
+ */
+class PrintJobQueue {
+    static final int MAX_QUEUED_JOBS = 32;
+    static final int MAX_WAITING_JOBS = 64;
+    static final int MAX_BATCH_BYTES = 16 * 1024;
+    private static final int MAX_HISTORY = 256;
+
+    static final String STATUS_QUEUED = "queued";
+    static final String STATUS_PRINTING = "printing";
+    static final String STATUS_COMPLETED = "completed";
+    static final String STATUS_FAILED = "failed";
+    static final String ERROR_INTERRUPTED = "interrupted while printing, it may be partly printed";
+
+    private static final String QUEUED_SUFFIX = ".job";
+    private static final String PRINTING_SUFFIX = ".printing";
+    private static final String FAILED_SUFFIX = ".failed";
+
+    interface JobWriter {
+        void write(String address, byte[] data, int maxBufferSize, int delayTime) throws Exception;
+    }
+
+    interface Admission {
+        void accepted(long jobId);
+
+        void rejected(String reason);
+    }
+
+    static class Job {
+        final String address;
+        final byte[] data;
+        final int maxBufferSize;
+        final int delayTime;
+        long id;
+        String status;
+        String error;
+
+        Job(String address, byte[] data, int maxBufferSize, int delayTime) {
+            this.address = address;
+            this.data = data;
+            this.maxBufferSize = maxBufferSize;
+            this.delayTime = delayTime;
+        }
+
+        boolean canBatchWith(Job other) {
+            return maxBufferSize == other.maxBufferSize && delayTime == other.delayTime;
+        }
+
+        Map<String, Object> toMap() {
+            final Map<String, Object> map = new HashMap<>();
+            map.put("id", id);
+            map.put("address", address);
+            map.put("status", status);
+            map.put("error", error);
+            map.put("size", data.length);
+            return map;
+        }
+    }
+
+    private static class Waiting {
+        final Job job;
+        final Admission admission;
+
+        Waiting(Job job, Admission admission) {
+            this.job = job;
+            this.admission = admission;
+        }
+    }
+
+    private static class PrinterQueue {
+        final ArrayDeque<Job> queued = new ArrayDeque<>();
+        final ArrayDeque<Waiting> waiting = new ArrayDeque<>();
+        boolean draining;
+    }
+
+    private final DeviceExecutors executors;
+    private final JobWriter writer;
+    private final File storeDir;
+    // admission and persistence happen on this thread, keeping disk I/O off the caller
+    private final ExecutorService admissionThread = Executors.newSingleThreadExecutor();
+    private final Map<String, PrinterQueue> printers = new HashMap<>();
+    private final Map<Long, Job> jobs = new LinkedHashMap<Long, Job>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Job> eldest) {
+            final String status = eldest.getValue().status;
+            return size() > MAX_HISTORY && (STATUS_COMPLETED.equals(status) || STATUS_FAILED.equals(status));
+        }
+    };
+    private long nextId = 1;
+
+    PrintJobQueue(DeviceExecutors executors, JobWriter writer, File storeDir) {
+        this.executors = executors;
+        this.writer = writer;
+        this.storeDir = storeDir;
+        admissionThread.execute(this::restore);
+    }
+
+    void enqueue(Job job, Admission admission) {
+        admissionThread.execute(() -> {
+            final PrinterQueue queue;
+            final boolean park;
+            synchronized (this) {
+                queue = printer(job.address);
+                park = queue.queued.size() >= MAX_QUEUED_JOBS || !queue.waiting.isEmpty();
+                if (park && queue.waiting.size() >= MAX_WAITING_JOBS) {
+                    admission.rejected("queue_full");
+                    return;
+                }
+            }
+
+            // parked jobs are stored too, a crash before they are admitted doesn't lose them
+            store(job);
+            if (park) {
+                synchronized (this) {
+                    queue.waiting.offer(new Waiting(job, admission));
+                }
+                return;
+            }
+
+            offer(queue, job);
+            admission.accepted(job.id);
+        });
+    }
+
+    synchronized Map<String, Object> status(long jobId) {
+        final Job job = jobs.get(jobId);
+        return job == null ? null : job.toMap();
+    }
+
+    /** Known jobs oldest first, including those restored as failed after a crash. */
+    synchronized List<Map<String, Object>> list() {
+        final List<Map<String, Object>> list = new ArrayList<>();
+        for (Job job : jobs.values()) {
+            list.add(job.toMap());
+        }
+        return list;
+    }
+
+    /**
+     * Forgets a job that finished or failed, deleting the marker kept for a job that was
+     * interrupted while printing. Returns false for unknown or unfinished jobs.
+     */
+    boolean acknowledge(long jobId) {
+        synchronized (this) {
+            final Job job = jobs.get(jobId);
+            if (job == null || !(STATUS_COMPLETED.equals(job.status) || STATUS_FAILED.equals(job.status))) {
+                return false;
+            }
+            jobs.remove(jobId);
+        }
+
+        if (storeDir != null) {
+            admissionThread.execute(() -> failedFileOf(jobId).delete());
+        }
+        return true;
+    }
+
+    void shutdown() {
+        admissionThread.shutdownNow();
+    }
+
+    private PrinterQueue printer(String address) {
+        PrinterQueue queue = printers.get(address);
+        if (queue == null) {
+            queue = new PrinterQueue();
+            printers.put(address, queue);
+        }
+        return queue;
+    }
+
+    // called on the admission thread
+    private void store(Job job) {
+        synchronized (this) {
+            job.id = nextId++;
+            job.status = STATUS_QUEUED;
+        }
+
+        persist(job);
+    }
+
+    // called on the admission thread once the job is stored
+    private void offer(PrinterQueue queue, Job job) {
+        synchronized (this) {
+            jobs.put(job.id, job);
+            queue.queued.offer(job);
+            if (!queue.draining) {
+                queue.draining = true;
+                executors.execute(job.address, () -> drain(queue));
+            }
+        }
+    }
+
+    private void admitWaiting(PrinterQueue queue) {
+        while (true) {
+            final Waiting next;
+            synchronized (this) {
+                if (queue.queued.size() >= MAX_QUEUED_JOBS || queue.waiting.isEmpty()) {
+                    return;
+                }
+                next = queue.waiting.poll();
+            }
+
+            offer(queue, next.job);
+            next.admission.accepted(next.job.id);
+        }
+    }
+
+    // called on the printer's serial executor, prints one batch per turn so direct writes
+    // to the same printer are not starved by a long queue
+    private void drain(PrinterQueue queue) {
+        final List<Job> batch = new ArrayList<>();
+        int batchBytes = 0;
+        synchronized (this) {
+            Job head = queue.queued.poll();
+            if (head == null) {
+                queue.draining = false;
+                return;
+            }
+
+            batch.add(head);
+            batchBytes = head.data.length;
+            Job next;
+            while ((next = queue.queued.peek()) != null && next.canBatchWith(head)
+                    && batchBytes + next.data.length <= MAX_BATCH_BYTES) {
+                batch.add(queue.queued.poll());
+                batchBytes += next.data.length;
+            }
+
+            for (Job job : batch) {
+                job.status = STATUS_PRINTING;
+            }
+        }
+
+        admissionThread.execute(() -> admitWaiting(queue));
+
+        for (Job job : batch) {
+            markPrinting(job);
+        }
+        final Job head = batch.get(0);
+        String error = null;
+        try {
+            writer.write(head.address, merge(batch, batchBytes), head.maxBufferSize, head.delayTime);
+        } catch (Exception e) {
+            error = e.getMessage() == null ? e.toString() : e.getMessage();
+        }
+
+        synchronized (this) {
+            for (Job job : batch) {
+                job.status = error == null ? STATUS_COMPLETED : STATUS_FAILED;
+                job.error = error;
+                discard(job);
+            }
+
+            if (queue.queued.isEmpty()) {
+                queue.draining = false;
+            } else {
+                executors.execute(head.address, () -> drain(queue));
+            }
+        }
+    }
+
+    private static byte[] merge(List<Job> batch, int size) {
+        if (batch.size() == 1) {
+            return batch.get(0).data;
+        }
+
+        final byte[] data = new byte[size];
+        int offset = 0;
+        for (Job job : batch) {
+            System.arraycopy(job.data, 0, data, offset, job.data.length);
+            offset += job.data.length;
+        }
+        return data;
+    }
+
+    private File fileOf(long id) {
+        return new File(storeDir, id + QUEUED_SUFFIX);
+    }
+
+    private File printingFileOf(long id) {
+        return new File(storeDir, id + PRINTING_SUFFIX);
+    }
+
+    private File failedFileOf(long id) {
+        return new File(storeDir, id + FAILED_SUFFIX);
+    }
+
+    private void persist(Job job) {
+        if (storeDir == null) {
+            return;
+        }
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new FileOutputStream(fileOf(job.id)));
+            out.writeUTF(job.address);
+            out.writeInt(job.maxBufferSize);
+            out.writeInt(job.delayTime);
+            out.writeInt(job.data.length);
+            out.write(job.data);
+        } catch (IOException e) {
+            // the job still prints, it just won't survive a restart
+            fileOf(job.id).delete();
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    // renamed rather than rewritten, a crash leaves either the queued or the printing file
+    private void markPrinting(Job job) {
+        if (storeDir != null) {
+            fileOf(job.id).renameTo(printingFileOf(job.id));
+        }
+    }
+
+    private void discard(Job job) {
+        if (storeDir != null) {
+            fileOf(job.id).delete();
+            printingFileOf(job.id).delete();
+        }
+    }
+
+    private void restore() {
+        if (storeDir == null || (!storeDir.isDirectory() && !storeDir.mkdirs())) {
+            return;
+        }
+
+        final File[] files = storeDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        final long[] ids = new long[files.length];
+        int count = 0;
+        for (File file : files) {
+            final String name = file.getName();
+            final String suffix = name.endsWith(QUEUED_SUFFIX) ? QUEUED_SUFFIX
+                    : name.endsWith(PRINTING_SUFFIX) ? PRINTING_SUFFIX
+                    : name.endsWith(FAILED_SUFFIX) ? FAILED_SUFFIX : null;
+            if (suffix == null) {
+                continue;
+            }
+            try {
+                final long id = Long.parseLong(name.substring(0, name.length() - suffix.length()));
+                ids[count++] = id;
+            } catch (NumberFormatException e) {
+                file.delete();
+            }
+        }
+        Arrays.sort(ids, 0, count);
+        if (count > 0) {
+            synchronized (this) {
+                nextId = Math.max(nextId, ids[count - 1] + 1);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            final File file = printingFileOf(ids[i]).exists() ? printingFileOf(ids[i])
+                    : failedFileOf(ids[i]).exists() ? failedFileOf(ids[i]) : fileOf(ids[i]);
+            final boolean interrupted = !file.getName().endsWith(QUEUED_SUFFIX);
+            DataInputStream in = null;
+            Job job = null;
+            try {
+                in = new DataInputStream(new FileInputStream(file));
+                final String address = in.readUTF();
+                final int maxBufferSize = in.readInt();
+                final int delayTime = in.readInt();
+                final byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                job = new Job(address, data, maxBufferSize, delayTime);
+                job.id = ids[i];
+            } catch (IOException e) {
+                // truncated by a crash while persisting
+            } finally {
+                closeQuietly(in);
+            }
+
+            if (job == null) {
+                file.delete();
+                continue;
+            }
+            if (interrupted) {
+                file.renameTo(failedFileOf(job.id));
+                job.status = STATUS_FAILED;
+                job.error = ERROR_INTERRUPTED;
+                synchronized (this) {
+                    jobs.put(job.id, job);
+                }
+                continue;
+            }
+
+            // its file stays where it is until the job printed
+            final PrinterQueue queue;
+            synchronized (this) {
+                queue = printer(job.address);
+                job.status = STATUS_QUEUED;
+            }
+            offer(queue, job);
+        }
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package id.flutter.plugins;
+
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What the app declared a printer to understand beyond plain {@code GS v 0}, persisted per
+ * address. None of it can be probed, a printer that ignores {@code GS P} or {@code ESC J} still
+ * answers every status request, so everything is off until the app turns it on.
+ */
+class PrinterCapabilities {
+    /** Cropped strips, {@code ESC J} feeds and {@code GS P}, see {@link RasterCompactor}. */
+    static final String CROP_RASTER = "cropRaster";
+
+    private final SharedPreferences preferences;
+
+    PrinterCapabilities(SharedPreferences preferences) {
+        this.preferences = preferences;
+    }
+
+    boolean cropRaster(String address) {
+        return address != null && preferences.getBoolean(key(address, CROP_RASTER), false);
+    }
+
+    void set(String address, boolean cropRaster) {
+        preferences.edit().putBoolean(key(address, CROP_RASTER), cropRaster).apply();
+    }
+
+    Map<String, Object> get(String address) {
+        final Map<String, Object> data = new HashMap<>();
+        data.put(CROP_RASTER, cropRaster(address));
+        return data;
+    }
+
+    private static String key(String address, String capability) {
+        return address + "|" + capability;
+    }
+}
@@ -0,0 +1,25 @@
+package id.flutter.plugins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An open byte stream to one printer.
+ *
+ * Everything past connecting (the pool, the chunked writer, the status reader) only talks to
+ * this, so the same write and read paths run over an RFCOMM socket on a phone and over an
+ * in-memory printer in the JVM benchmarks.
+ */
+interface PrinterTransport {
+    String getAddress();
+
+    InputStream getInputStream() throws IOException;
+
+    OutputStream getOutputStream() throws IOException;
+
+    boolean isConnected();
+
+    /** Closing unblocks a thread waiting in a read of {@link #getInputStream()}. */
+    void close() throws IOException;
+}
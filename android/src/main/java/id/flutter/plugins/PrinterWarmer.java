@@ -0,0 +1,189 @@
+package id.flutter.plugins;
+
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the app's preferred printers connected so the first job does not pay for the RFCOMM
+ * handshake.
+ *
+ * Warm-ups run on the printer's serial executor, so they never race a job, and preferred
+ * printers are pinned in the pool so idle eviction leaves them alone. Every warm-up reports
+ * its outcome to the {@link Listener}.
+ */
+class PrinterWarmer {
+    static final String TRIGGER_ATTACH = "attach";
+    static final String TRIGGER_ADAPTER_ON = "adapter_on";
+    static final String TRIGGER_ADAPTER_OFF = "adapter_off";
+    static final String TRIGGER_RESUME = "resume";
+    static final String TRIGGER_CONFIGURE = "configure";
+    static final String TRIGGER_JOB_FAILED = "job_failed";
+    static final String TRIGGER_DISCONNECT = "disconnect";
+
+    private static final String KEY_PREFERRED = "preferred";
+
+    interface Listener {
+        void onReadiness(Map<String, Object> event);
+    }
+
+    private final ConnectionPool pool;
+    private final DeviceExecutors executors;
+    private final SharedPreferences preferences;
+    private final Listener listener;
+    // guarded by this
+    private final List<String> preferred = new ArrayList<>();
+    private final Set<String> warming = new HashSet<>();
+    private final Map<String, Map<String, Object>> last = new HashMap<>();
+
+    PrinterWarmer(ConnectionPool pool, DeviceExecutors executors, SharedPreferences preferences,
+            Listener listener) {
+        this.pool = pool;
+        this.executors = executors;
+        this.preferences = preferences;
+        this.listener = listener;
+
+        final String stored = preferences.getString(KEY_PREFERRED, "");
+        if (!stored.isEmpty()) {
+            preferred.addAll(Arrays.asList(stored.split(",")));
+        }
+        for (String address : preferred) {
+            pool.pin(address);
+        }
+    }
+
+    synchronized List<String> preferred() {
+        return new ArrayList<>(preferred);
+    }
+
+    /** Latest readiness of every preferred printer, replayed to late listeners. */
+    synchronized List<Map<String, Object>> lastReadiness() {
+        final List<Map<String, Object>> list = new ArrayList<>();
+        for (String address : preferred) {
+            final Map<String, Object> event = last.get(address);
+            if (event != null) {
+                list.add(event);
+            }
+        }
+        return list;
+    }
+
+    void setPreferred(List<String> addresses) {
+        synchronized (this) {
+            for (String address : preferred) {
+                if (!addresses.contains(address)) {
+                    pool.unpin(address);
+                }
+            }
+
+            preferred.clear();
+            final StringBuilder stored = new StringBuilder();
+            for (String address : addresses) {
+                if (preferred.contains(address)) {
+                    continue;
+                }
+
+                preferred.add(address);
+                pool.pin(address);
+                if (stored.length() > 0) {
+                    stored.append(',');
+                }
+                stored.append(address);
+            }
+            preferences.edit().putString(KEY_PREFERRED, stored.toString()).apply();
+        }
+
+        warmAll(TRIGGER_CONFIGURE);
+    }
+
+    void warmAll(String trigger) {
+        for (String address : preferred()) {
+            warm(address, trigger);
+        }
+    }
+
+    /**
+     * Reports every preferred printer as down, e.g. when the adapter turns off. Network printers
+     * do not depend on the adapter and are left out.
+     */
+    void reportDown(String trigger, String reason) {
+        for (String address : preferred()) {
+            if (TcpTransport.isTcp(address)) {
+                continue;
+            }
+            report(event(address, trigger, false, 0, reason));
+        }
+    }
+
+    /** Connects a preferred printer again after a failed job closed its socket. */
+    void rewarm(String address, String trigger) {
+        final boolean isPreferred;
+        synchronized (this) {
+            isPreferred = preferred.contains(address);
+        }
+        if (isPreferred) {
+            warm(address, trigger);
+        }
+    }
+
+    /** Reports a preferred printer the app disconnected, it stays cold until the next trigger. */
+    void reportDisconnected(String address) {
+        final boolean isPreferred;
+        synchronized (this) {
+            isPreferred = preferred.contains(address);
+        }
+        if (isPreferred) {
+            report(event(address, TRIGGER_DISCONNECT, false, 0, "disconnected"));
+        }
+    }
+
+    private void warm(String address, String trigger) {
+        synchronized (this) {
+            if (!warming.add(address)) {
+                return;
+            }
+        }
+
+        executors.execute(address, () -> {
+            final long start = SystemClock.elapsedRealtime();
+            try {
+                // a pooled socket is kept alive by the pool's probes, acquiring it would count as a use
+                if (!pool.contains(address)) {
+                    pool.acquire(address);
+                }
+                report(event(address, trigger, true, SystemClock.elapsedRealtime() - start, null));
+            } catch (Exception e) {
+                report(event(address, trigger, false, SystemClock.elapsedRealtime() - start, e.getMessage()));
+            } finally {
+                synchronized (this) {
+                    warming.remove(address);
+                }
+            }
+        });
+    }
+
+    private void report(Map<String, Object> event) {
+        synchronized (this) {
+            last.put((String) event.get("address"), event);
+        }
+        listener.onReadiness(event);
+    }
+
+    private static Map<String, Object> event(String address, String trigger, boolean ready, long latencyMs,
+            String error) {
+        final Map<String, Object> data = new HashMap<>();
+        data.put("address", address);
+        data.put("trigger", trigger);
+        data.put("ready", ready);
+        data.put("latencyMs", latencyMs);
+        data.put("error", error);
+        return data;
+    }
+}
@@ -0,0 +1,216 @@
+package id.flutter.plugins;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Re-frames a packed 1-bit bitmap into a sequence of {@code GS v 0} strips of at most
+ * {@link #STRIP_HEIGHT} rows, each cut right after its rightmost black pixel, and replaces
+ * runs of at least {@link #MIN_FEED_ROWS} blank rows with {@code ESC J} paper feeds.
+ *
+ * Receipts are mostly short text lines and white gaps, all of which a plain {@code GS v 0}
+ * block sends anyway. This is cropping, not a compressed raster format: nothing is run-length
+ * encoded and no printer has to understand anything beyond {@code GS v 0} and {@code ESC J};
+ * when it does not pay for the extra headers the bitmap is sent as a single plain block. The strips are printed from the left margin, so the output starts with
+ * {@code ESC a 0} and leaves the justification at left. Feeds count motion units, which
+ * printers default to anything from 1/180 to 1/360 inch, so the output also sets the vertical
+ * unit to one dot with {@code GS P 0 dpi}. The unit stays set afterwards; feeds and line
+ * spacing already set are not affected by the change.
+ */
+final class RasterCompactor {
+    static final int STRIP_HEIGHT = 24;
+    // a feed plus the header of the next strip cost 11 bytes, fewer blank rows rarely pay for it
+    static final int MIN_FEED_ROWS = 4;
+    static final int DEFAULT_DPI = 203;
+
+    private static final int RASTER_HEADER = 8;
+    private static final int MAX_FEED = 255;
+    private static final byte[] ALIGN_LEFT = { 0x1B, 'a', 0 };
+    private static final int MOTION_UNIT = 4;
+
+    private static final Object STATS = new Object();
+    private static long images;
+    private static long plainBytes;
+    private static long sentBytes;
+    private static long fedRows;
+    private static long fallbacks;
+
+    private RasterCompactor() {
+    }
+
+    /** Upper bound of {@link #compact} for a {@code widthBytes} x {@code height} bitmap. */
+    static int maxSize(int widthBytes, int height) {
+        // anything larger than the plain block is never sent
+        return RASTER_HEADER + widthBytes * height;
+    }
+
+    /**
+     * Writes the commands printing {@code height} rows of {@code widthBytes} bytes from
+     * {@code bits} into {@code out} and returns the end offset. {@code dpi} is the vertical
+     * resolution of the printer, one feed unit per dot.
+     */
+    static int compact(byte[] bits, int bitsOffset, int widthBytes, int height, int dpi, byte[] out,
+            int offset) {
+        if (height == 0) {
+            return offset;
+        }
+        if (dpi < 1 || dpi > 255) {
+            throw new IllegalArgumentException("dpi must be within 1 and 255, was " + dpi);
+        }
+
+        final int[] inkWidths = new int[height];
+        for (int y = 0; y < height; y++) {
+            inkWidths[y] = inkWidth(bits, bitsOffset + y * widthBytes, widthBytes);
+        }
+
+        final int plain = RASTER_HEADER + widthBytes * height;
+        final int size = emit(bits, bitsOffset, widthBytes, height, dpi, inkWidths, null, 0);
+        final int end;
+        if (size >= plain) {
+            offset = EscPosRaster.writeHeader(EscPosRaster.MODE_RASTER, out, offset, widthBytes, height);
+            System.arraycopy(bits, bitsOffset, out, offset, widthBytes * height);
+            end = offset + widthBytes * height;
+        } else {
+            end = emit(bits, bitsOffset, widthBytes, height, dpi, inkWidths, out, offset);
+        }
+
+        synchronized (STATS) {
+            images++;
+            plainBytes += plain;
+            if (size >= plain) {
+                sentBytes += plain;
+                fallbacks++;
+            } else {
+                sentBytes += size;
+                fedRows += countFedRows(inkWidths, height);
+            }
+        }
+        return end;
+    }
+
+    static Map<String, Object> stats() {
+        synchronized (STATS) {
+            final Map<String, Object> data = new HashMap<>();
+            data.put("images", images);
+            data.put("plainBytes", plainBytes);
+            data.put("sentBytes", sentBytes);
+            data.put("savedBytes", plainBytes - sentBytes);
+            data.put("fedRows", fedRows);
+            data.put("fallbacks", fallbacks);
+            return data;
+        }
+    }
+
+    /**
+     * Writes the strips and feeds into {@code out} and returns the end offset, or only returns
+     * the size when {@code out} is null.
+     */
+    private static int emit(byte[] bits, int bitsOffset, int widthBytes, int height, int dpi, int[] inkWidths,
+            byte[] out, int offset) {
+        offset = put(out, offset, ALIGN_LEFT);
+        offset = motionUnit(out, offset, dpi);
+
+        int y = 0;
+        while (y < height) {
+            final int blank = blankRun(inkWidths, y, height);
+            if (blank >= MIN_FEED_ROWS || y + blank == height) {
+                offset = feed(out, offset, blank);
+                y += blank;
+                continue;
+            }
+
+            // a strip ends at STRIP_HEIGHT rows or before a blank run worth a feed
+            int end = y;
+            int width = 0;
+            while (end < height && end - y < STRIP_HEIGHT) {
+                if (inkWidths[end] == 0) {
+                    final int run = blankRun(inkWidths, end, height);
+                    if (run >= MIN_FEED_ROWS) {
+                        break;
+                    }
+                    end = Math.min(end + run, y + STRIP_HEIGHT);
+                } else {
+                    width = Math.max(width, inkWidths[end]);
+                    end++;
+                }
+            }
+
+            final int rows = end - y;
+            if (out == null) {
+                offset += RASTER_HEADER + width * rows;
+            } else {
+                offset = EscPosRaster.writeHeader(EscPosRaster.MODE_RASTER, out, offset, width, rows);
+                for (int row = y; row < end; row++) {
+                    System.arraycopy(bits, bitsOffset + row * widthBytes, out, offset, width);
+                    offset += width;
+                }
+            }
+            y = end;
+        }
+        return offset;
+    }
+
+    // GS P x y, x = 0 keeps the horizontal unit at the printer default
+    private static int motionUnit(byte[] out, int offset, int dpi) {
+        if (out != null) {
+            out[offset] = 0x1D;
+            out[offset + 1] = 'P';
+            out[offset + 2] = 0;
+            out[offset + 3] = (byte) dpi;
+        }
+        return offset + MOTION_UNIT;
+    }
+
+    // ESC J n, print and feed n motion units
+    private static int feed(byte[] out, int offset, int rows) {
+        while (rows > 0) {
+            final int n = Math.min(MAX_FEED, rows);
+            if (out != null) {
+                out[offset] = 0x1B;
+                out[offset + 1] = 'J';
+                out[offset + 2] = (byte) n;
+            }
+            offset += 3;
+            rows -= n;
+        }
+        return offset;
+    }
+
+    private static int put(byte[] out, int offset, byte[] data) {
+        if (out != null) {
+            System.arraycopy(data, 0, out, offset, data.length);
+        }
+        return offset + data.length;
+    }
+
+    private static int countFedRows(int[] inkWidths, int height) {
+        int rows = 0;
+        int y = 0;
+        while (y < height) {
+            final int blank = blankRun(inkWidths, y, height);
+            if (blank >= MIN_FEED_ROWS || y + blank == height) {
+                rows += blank;
+            }
+            y += Math.max(1, blank);
+        }
+        return rows;
+    }
+
+    private static int blankRun(int[] inkWidths, int from, int height) {
+        int y = from;
+        while (y < height && inkWidths[y] == 0) {
+            y++;
+        }
+        return y - from;
+    }
+
+    // bytes up to and including the rightmost non-zero byte of the row
+    private static int inkWidth(byte[] bits, int offset, int widthBytes) {
+        for (int x = widthBytes - 1; x >= 0; x--) {
+            if (bits[offset + x] != 0) {
+                return x + 1;
+            }
+        }
+        return 0;
+    }
+}
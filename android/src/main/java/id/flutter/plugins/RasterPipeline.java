@@ -0,0 +1,132 @@
+package id.flutter.plugins;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Encodes an image band by band on the encoder pool while the calling thread sends the
+ * previous bands to the printer.
+ *
+ * Only {@link #BUFFERS} band buffers exist at any time and they are recycled, so peak memory is
+ * a few bands instead of the whole bitmap and the printer starts feeding as soon as the first
+ * band is ready.
+ */
+class RasterPipeline {
+    static final int DEFAULT_BAND_HEIGHT = 256;
+    private static final int BUFFERS = 3;
+
+    /** Produces the ESC/POS command of each band. */
+    interface BandSource {
+        int bandCount();
+
+        /** Largest command {@link #encodeBand} can produce. */
+        int maxBandSize();
+
+        /**
+         * Total size of all band commands, used for progress reporting. May be an upper bound
+         * when the size depends on the image.
+         */
+        int totalSize();
+
+        /** Encodes band {@code index} into {@code out} and returns its length. */
+        int encodeBand(int index, byte[] out) throws Exception;
+
+        void close();
+    }
+
+    private static class Band {
+        final byte[] data;
+        int length;
+        Exception error;
+
+        Band(int capacity) {
+            data = new byte[capacity];
+        }
+    }
+
+    private static final Band END = new Band(0);
+
+    private final ExecutorService encoder;
+
+    RasterPipeline(ExecutorService encoder) {
+        this.encoder = encoder;
+    }
+
+    /** Sends the bands through {@code writer}, whose pacing and status gate apply to every band. */
+    void print(BandSource source, ChunkedWriter writer, ChunkedWriter.ProgressListener listener) throws Exception {
+        final BlockingQueue<Band> free = new ArrayBlockingQueue<>(BUFFERS);
+        final BlockingQueue<Band> ready = new ArrayBlockingQueue<>(BUFFERS + 1);
+        for (int i = 0; i < BUFFERS; i++) {
+            free.add(new Band(source.maxBandSize()));
+        }
+
+        // whoever claims the source closes it, the producer may be cancelled before it ever ran
+        final AtomicBoolean claimed = new AtomicBoolean();
+        final Future<?> producer;
+        try {
+            producer = encoder.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return;
+                }
+                produce(source, free, ready);
+            });
+        } catch (RuntimeException e) {
+            source.close();
+            throw e;
+        }
+
+        final int total = source.totalSize();
+        int sent = 0;
+        try {
+            while (true) {
+                final Band band = ready.take();
+                if (band == END) {
+                    break;
+                }
+                if (band.error != null) {
+                    throw band.error;
+                }
+
+                final int base = sent;
+                writer.write(band.data, 0, band.length, listener == null ? null
+                        : (bandTotal, bandSent) -> listener.onProgress(total, base + bandSent));
+                sent += band.length;
+                free.put(band);
+            }
+        } catch (Exception e) {
+            producer.cancel(true);
+            if (claimed.compareAndSet(false, true)) {
+                source.close();
+            }
+            throw e;
+        }
+
+        if (sent != total && listener != null) {
+            listener.onProgress(sent, sent);
+        }
+    }
+
+    private static void produce(BandSource source, BlockingQueue<Band> free, BlockingQueue<Band> ready) {
+        try {
+            for (int i = 0; i < source.bandCount(); i++) {
+                final Band band = free.take();
+                try {
+                    band.length = source.encodeBand(i, band.data);
+                } catch (Exception e) {
+                    band.error = e;
+                    ready.put(band);
+                    return;
+                }
+                ready.put(band);
+            }
+            ready.put(END);
+        } catch (InterruptedException e) {
+            // cancelled by the sender
+        } finally {
+            source.close();
+        }
+    }
+}
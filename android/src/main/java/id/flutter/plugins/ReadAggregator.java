@@ -0,0 +1,150 @@
+package id.flutter.plugins;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Collects inbound bytes and delivers them as one buffer per aggregation window.
+ *
+ * A window closes after {@code windowMs} or once {@code windowBytes} are buffered, whichever
+ * comes first. At most two flushes are ever scheduled on the delivery thread, so a chatty
+ * device can't flood the main looper; when delivery falls behind, bytes pile up to
+ * {@code maxPendingBytes} and the overflow policy decides which ones are dropped.
+ */
+class ReadAggregator {
+    static final int DEFAULT_WINDOW_MS = 16;
+    static final int DEFAULT_WINDOW_BYTES = 4096;
+    static final int DEFAULT_MAX_PENDING_BYTES = 64 * 1024;
+
+    static final String DROP_OLDEST = "drop_oldest";
+    static final String DROP_NEWEST = "drop_newest";
+
+    interface Scheduler {
+        void schedule(Runnable task, long delayMs);
+    }
+
+    interface Sink {
+        void deliver(byte[] data);
+    }
+
+    private final Scheduler scheduler;
+    private final Sink sink;
+
+    // guarded by this
+    private int windowMs = DEFAULT_WINDOW_MS;
+    private int windowBytes = DEFAULT_WINDOW_BYTES;
+    private String overflow = DROP_OLDEST;
+    private byte[] pending = new byte[DEFAULT_MAX_PENDING_BYTES];
+    private int pendingLength;
+    private long flushDue;
+    private long flushSeq;
+    private long deliveries;
+    private long deliveredBytes;
+    private long droppedBytes;
+
+    ReadAggregator(Scheduler scheduler, Sink sink) {
+        this.scheduler = scheduler;
+        this.sink = sink;
+    }
+
+    synchronized void configure(int windowMs, int windowBytes, int maxPendingBytes, String overflow) {
+        if (!DROP_OLDEST.equals(overflow) && !DROP_NEWEST.equals(overflow)) {
+            throw new IllegalArgumentException("unknown overflow policy " + overflow);
+        }
+
+        this.windowMs = Math.max(0, windowMs);
+        this.windowBytes = Math.max(1, windowBytes);
+        this.overflow = overflow;
+        final int capacity = Math.max(this.windowBytes, maxPendingBytes);
+        if (capacity != pending.length) {
+            final int kept = Math.min(pendingLength, capacity);
+            final byte[] resized = new byte[capacity];
+            System.arraycopy(pending, pendingLength - kept, resized, 0, kept);
+            droppedBytes += pendingLength - kept;
+            pending = resized;
+            pendingLength = kept;
+        }
+    }
+
+    /** Buffers {@code length} bytes, may be called from any thread. */
+    void offer(byte[] data, int offset, int length) {
+        final long delay;
+        final long seq;
+        synchronized (this) {
+            append(data, offset, length);
+
+            final long now = System.nanoTime() / 1000000;
+            final long due = pendingLength >= windowBytes ? now : now + windowMs;
+            if (flushDue != 0 && flushDue <= due) {
+                return;
+            }
+            flushDue = due;
+            seq = ++flushSeq;
+            delay = due - now;
+        }
+        // a flush superseded by an earlier one turns into a no-op
+        scheduler.schedule(() -> flush(seq), delay);
+    }
+
+    synchronized Map<String, Object> stats() {
+        final Map<String, Object> data = new HashMap<>();
+        data.put("windowMs", windowMs);
+        data.put("windowBytes", windowBytes);
+        data.put("maxPendingBytes", pending.length);
+        data.put("overflow", overflow);
+        data.put("pendingBytes", pendingLength);
+        data.put("deliveries", deliveries);
+        data.put("deliveredBytes", deliveredBytes);
+        data.put("droppedBytes", droppedBytes);
+        return data;
+    }
+
+    // runs on the delivery thread
+    private void flush(long seq) {
+        final byte[] data;
+        synchronized (this) {
+            if (seq != flushSeq || flushDue == 0) {
+                return;
+            }
+            flushDue = 0;
+            if (pendingLength == 0) {
+                return;
+            }
+
+            data = Arrays.copyOf(pending, pendingLength);
+            pendingLength = 0;
+            deliveries++;
+            deliveredBytes += data.length;
+        }
+        sink.deliver(data);
+    }
+
+    // called with the lock held
+    private void append(byte[] data, int offset, int length) {
+        final int capacity = pending.length;
+        if (DROP_NEWEST.equals(overflow)) {
+            final int accepted = Math.min(length, capacity - pendingLength);
+            System.arraycopy(data, offset, pending, pendingLength, accepted);
+            pendingLength += accepted;
+            droppedBytes += length - accepted;
+            return;
+        }
+
+        if (length >= capacity) {
+            droppedBytes += pendingLength + length - capacity;
+            System.arraycopy(data, offset + length - capacity, pending, 0, capacity);
+            pendingLength = capacity;
+            return;
+        }
+
+        final int excess = pendingLength + length - capacity;
+        if (excess > 0) {
+            System.arraycopy(pending, excess, pending, 0, pendingLength - excess);
+            pendingLength -= excess;
+            droppedBytes += excess;
+        }
+        System.arraycopy(data, offset, pending, pendingLength, length);
+        pendingLength += length;
+    }
+}
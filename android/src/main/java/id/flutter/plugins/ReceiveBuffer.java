@@ -0,0 +1,105 @@
+package id.flutter.plugins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Receive side of a printer connection.
+ *
+ * Reads land in one buffer taken from a small shared pool, and a burst of small reads is
+ * delivered once: the buffer is only handed to the sink when the stream has nothing more
+ * buffered or the buffer is full. The array passed to {@link Sink#onFrame} is only valid
+ * during the call, nothing is allocated per read.
+ */
+final class ReceiveBuffer {
+    static final int CAPACITY = 4096;
+    private static final int POOL_SIZE = 4;
+
+    interface Sink {
+        void onFrame(byte[] data, int length);
+    }
+
+    // guarded by POOL
+    private static final ArrayDeque<byte[]> POOL = new ArrayDeque<>();
+    private static long allocations;
+    private static long reuses;
+    // counted on every read, kept off the POOL lock the reader threads would contend on
+    private static final AtomicLong READS = new AtomicLong();
+    private static final AtomicLong FRAMES = new AtomicLong();
+    private static final AtomicLong BYTES = new AtomicLong();
+
+    private byte[] buffer;
+    private int length;
+
+    private ReceiveBuffer(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    static ReceiveBuffer obtain() {
+        synchronized (POOL) {
+            final byte[] pooled = POOL.poll();
+            if (pooled != null) {
+                reuses++;
+                return new ReceiveBuffer(pooled);
+            }
+            allocations++;
+        }
+        return new ReceiveBuffer(new byte[CAPACITY]);
+    }
+
+    /** Returns the buffer to the pool, the instance must not be used afterwards. */
+    void release() {
+        final byte[] released = buffer;
+        buffer = null;
+        length = 0;
+        if (released == null) {
+            return;
+        }
+
+        synchronized (POOL) {
+            if (POOL.size() < POOL_SIZE) {
+                POOL.push(released);
+            }
+        }
+    }
+
+    /**
+     * Blocks for one read and delivers the accumulated bytes once the burst is over.
+     *
+     * @throws IOException when the stream failed or reached its end
+     */
+    void read(InputStream in, Sink sink) throws IOException {
+        final int count = in.read(buffer, length, buffer.length - length);
+        if (count < 0) {
+            throw new IOException("stream closed");
+        }
+        length += count;
+        READS.incrementAndGet();
+
+        if (length > 0 && (length == buffer.length || in.available() == 0)) {
+            final int delivered = length;
+            length = 0;
+            FRAMES.incrementAndGet();
+            BYTES.addAndGet(delivered);
+            sink.onFrame(buffer, delivered);
+        }
+    }
+
+    /** Totals over every receive buffer, buffer allocations included. */
+    static Map<String, Object> stats() {
+        final Map<String, Object> data = new HashMap<>();
+        synchronized (POOL) {
+            data.put("bufferAllocations", allocations);
+            data.put("bufferReuses", reuses);
+            data.put("pooledBuffers", POOL.size());
+        }
+        data.put("reads", READS.get());
+        data.put("frames", FRAMES.get());
+        data.put("bytes", BYTES.get());
+        return data;
+    }
+}
@@ -0,0 +1,161 @@
+package id.flutter.plugins;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipelined status polling for a job being written.
+ *
+ * {@code DLE EOT 2} (offline cause) is slipped in between chunks every {@code pollIntervalMs};
+ * the answers are picked up by the socket's reader thread and fed to {@link #onBytes}, so the
+ * writer never waits for a reply while the printer is fine. When the printer reports the cover
+ * open, a paper-end stop or an error, the next chunk is held back, polling continues and
+ * sending resumes as soon as the printer recovers, failing after {@code maxPauseMs}.
+ *
+ * ESC/POS printers take real-time commands out of the receive buffer before interpreting it,
+ * so the requests may land between any two bytes of the job.
+ */
+class StatusMonitor implements ChunkedWriter.ChunkGate {
+    static final int COVER_OPEN = 0x04;
+    static final int PAPER_END_STOP = 0x20;
+    static final int ERROR = 0x40;
+
+    static final long DEFAULT_POLL_INTERVAL_MS = 500;
+    static final long DEFAULT_MAX_PAUSE_MS = 60 * 1000;
+    // how long the final check waits for an answer before assuming the printer can't report
+    private static final long RESPONSE_TIMEOUT_MS = 1000;
+
+    private static final byte[] REQUEST = { 0x10, 0x04, 2 };
+
+    interface Listener {
+        void onStatusChanged(boolean paused, String reason, int status);
+    }
+
+    private final long pollIntervalNanos;
+    private final long maxPauseMs;
+    private final Listener listener;
+    private final Object lock = new Object();
+
+    // guarded by lock
+    private int status = -1;
+    private long responses;
+
+    // writer thread only
+    private long lastPoll;
+    private boolean polled;
+
+    StatusMonitor(long pollIntervalMs, long maxPauseMs, Listener listener) {
+        this.pollIntervalNanos = TimeUnit.MILLISECONDS.toNanos(pollIntervalMs);
+        this.maxPauseMs = maxPauseMs;
+        this.listener = listener;
+    }
+
+    static boolean isBlocked(int status) {
+        return status >= 0 && (status & (COVER_OPEN | PAPER_END_STOP | ERROR)) != 0;
+    }
+
+    static String reason(int status) {
+        if ((status & COVER_OPEN) != 0) {
+            return "cover_open";
+        }
+        if ((status & PAPER_END_STOP) != 0) {
+            return "paper_out";
+        }
+        if ((status & ERROR) != 0) {
+            return "error";
+        }
+        return null;
+    }
+
+    /** Bytes received on the socket while the job is running, called on the reader thread. */
+    void onBytes(byte[] data, int length) {
+        for (int i = 0; i < length; i++) {
+            // DLE EOT status bytes always have bits 1 and 4 set and bits 0 and 7 clear
+            if ((data[i] & 0x93) == 0x12) {
+                update(data[i] & 0xFF);
+            }
+        }
+    }
+
+    private void update(int value) {
+        final boolean wasBlocked;
+        synchronized (lock) {
+            wasBlocked = isBlocked(status);
+            status = value;
+            responses++;
+            lock.notifyAll();
+        }
+
+        if (wasBlocked != isBlocked(value)) {
+            listener.onStatusChanged(isBlocked(value), reason(value), value);
+        }
+    }
+
+    @Override
+    public void beforeChunk(OutputStream out) throws IOException, InterruptedException {
+        pollIfDue(out);
+        awaitClear(out);
+    }
+
+    /**
+     * Called once the whole job was sent: asks for a fresh status and, if the printer stopped,
+     * waits for it to recover. Printers that never answer are assumed to be fine.
+     */
+    void finish(OutputStream out) throws IOException, InterruptedException {
+        final long before;
+        synchronized (lock) {
+            before = responses;
+        }
+        poll(out);
+
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RESPONSE_TIMEOUT_MS);
+        synchronized (lock) {
+            long remaining;
+            while (responses == before && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+            }
+        }
+        awaitClear(out);
+    }
+
+    private void awaitClear(OutputStream out) throws IOException, InterruptedException {
+        final long pauseDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxPauseMs);
+        while (true) {
+            final int current;
+            synchronized (lock) {
+                if (!isBlocked(status)) {
+                    return;
+                }
+
+                final long now = System.nanoTime();
+                final long wait = Math.min(lastPoll + pollIntervalNanos, pauseDeadline) - now;
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(lock, wait);
+                }
+                current = status;
+            }
+
+            if (!isBlocked(current)) {
+                return;
+            }
+            if (System.nanoTime() - pauseDeadline >= 0) {
+                throw new IOException("printer paused: " + reason(current));
+            }
+            pollIfDue(out);
+        }
+    }
+
+    private void pollIfDue(OutputStream out) throws IOException {
+        if (!polled || System.nanoTime() - lastPoll >= pollIntervalNanos) {
+            poll(out);
+        }
+    }
+
+    private void poll(OutputStream out) throws IOException {
+        out.write(REQUEST);
+        out.flush();
+        lastPoll = System.nanoTime();
+        polled = true;
+    }
+}
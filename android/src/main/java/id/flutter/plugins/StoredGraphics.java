@@ -0,0 +1,114 @@
+package id.flutter.plugins;
+
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Local index of the graphics uploaded into each printer, so a logo is sent once and every
+ * later ticket only carries the few bytes of the print command.
+ *
+ * NV entries survive a printer power cycle and are persisted. Download graphics are lost
+ * whenever the printer is switched off, which the plugin cannot observe, so they are only
+ * remembered in memory and dropped when bluetooth turns off. NV memory also wears out after a
+ * limited number of rewrites, which is why an upload is skipped when the same data is indexed.
+ */
+class StoredGraphics {
+    private final SharedPreferences preferences;
+    // download graphics, guarded by this
+    private final Map<String, String> volatileEntries = new HashMap<>();
+
+    StoredGraphics(SharedPreferences preferences) {
+        this.preferences = preferences;
+    }
+
+    static String fingerprint(byte[] command) {
+        final CRC32 crc = new CRC32();
+        crc.update(command);
+        return Long.toHexString(crc.getValue()) + ":" + command.length;
+    }
+
+    synchronized boolean isStored(String address, int store, String key, String fingerprint) {
+        return fingerprint.equals(get(address, store, key));
+    }
+
+    synchronized void record(String address, int store, String key, String fingerprint) {
+        if (store == EscPosRaster.STORE_NV) {
+            preferences.edit().putString(entryKey(address, store, key), fingerprint).apply();
+        } else {
+            volatileEntries.put(entryKey(address, store, key), fingerprint);
+        }
+    }
+
+    /** Everything indexed for {@code address}. */
+    synchronized List<Map<String, Object>> list(String address) {
+        final List<Map<String, Object>> list = new ArrayList<>();
+        for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+            addIfMatches(list, address, entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, String> entry : volatileEntries.entrySet()) {
+            addIfMatches(list, address, entry.getKey(), entry.getValue());
+        }
+        return list;
+    }
+
+    /** Forgets {@code address}, e.g. after the printer was replaced or its memory cleared. */
+    synchronized void forget(String address) {
+        final SharedPreferences.Editor editor = preferences.edit();
+        for (String key : preferences.getAll().keySet()) {
+            if (key.startsWith(address + "|")) {
+                editor.remove(key);
+            }
+        }
+        editor.apply();
+
+        final List<String> keys = new ArrayList<>(volatileEntries.keySet());
+        for (String key : keys) {
+            if (key.startsWith(address + "|")) {
+                volatileEntries.remove(key);
+            }
+        }
+    }
+
+    /** Called when the Bluetooth adapter turns off, network printers are not affected. */
+    synchronized void forgetVolatile() {
+        final List<String> keys = new ArrayList<>(volatileEntries.keySet());
+        for (String key : keys) {
+            if (!TcpTransport.isTcp(key)) {
+                volatileEntries.remove(key);
+            }
+        }
+    }
+
+    private String get(String address, int store, String key) {
+        if (store == EscPosRaster.STORE_NV) {
+            return preferences.getString(entryKey(address, store, key), null);
+        }
+        return volatileEntries.get(entryKey(address, store, key));
+    }
+
+    // address|store|key, the key is two printable characters and may contain '|' itself
+    private static String entryKey(String address, int store, String key) {
+        return address + "|" + store + "|" + key;
+    }
+
+    private static void addIfMatches(List<Map<String, Object>> list, String address, String entryKey,
+            Object fingerprint) {
+        if (!entryKey.startsWith(address + "|") || !(fingerprint instanceof String)) {
+            return;
+        }
+
+        final String rest = entryKey.substring(address.length() + 1);
+        final int separator = rest.indexOf('|');
+        final Map<String, Object> data = new HashMap<>();
+        data.put("store", Integer.parseInt(rest.substring(0, separator)) == EscPosRaster.STORE_NV ? "nv"
+                : "download");
+        data.put("key", rest.substring(separator + 1));
+        data.put("fingerprint", fingerprint);
+        list.add(data);
+    }
+}
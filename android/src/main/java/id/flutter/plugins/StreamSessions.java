@@ -0,0 +1,404 @@
+package id.flutter.plugins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streaming connections of the scanner style API, any number of devices side by side, each
+ * under a session id chosen by the caller.
+ *
+ * A session owns its transport, a reader and the {@link ReadAggregator} its bytes go through.
+ * Readers block, so each takes a thread from a pool bounded to {@code maxSessions} and opening
+ * more sessions than that fails; connects and writes run on the device's serial executor, which
+ * queues a session's writes in order and shares its threads with print jobs.
+ *
+ * Handshakes are bounded by a timeout and aborted by closing the pending socket: on timeout,
+ * when the session is closed or cancelled, and when a new connect reuses its id. Every status
+ * change goes to the {@link Listener}, except for an attempt that was cancelled since whoever
+ * cancelled it already reported the session.
+ */
+class StreamSessions {
+    static final int DEFAULT_MAX_SESSIONS = 4;
+    static final long DEFAULT_CONNECT_TIMEOUT_MS = 15 * 1000;
+
+    static final int DISCONNECTED = 0;
+    static final int CONNECTING = 1;
+    static final int CONNECTED = 2;
+
+    private static final String TIMEOUT = "connect_timeout";
+    private static final String CANCELLED = "connect_cancelled";
+
+    interface Dialer {
+        /** Creates an unconnected socket, cheap and non-blocking. */
+        Handshake dial(String address, String serviceUuid) throws IOException;
+    }
+
+    interface Handshake {
+        /**
+         * Blocks until connected, throws once {@link #abort()} was called. Transports with a
+         * connect timeout of their own use {@code timeoutMs}.
+         */
+        PrinterTransport connect(long timeoutMs) throws IOException;
+
+        void abort();
+    }
+
+    interface Listener {
+        void onStatus(String session, String address, int status);
+    }
+
+    /** Completion of an asynchronous call, invoked on the I/O thread. */
+    interface Completion {
+        void success(Object value);
+
+        void error(String code, String message);
+    }
+
+    private final class Session {
+        final String id;
+        final String address;
+        final ReadAggregator reads;
+        Handshake handshake;
+        String abort;
+        PrinterTransport transport;
+        boolean closed;
+
+        Session(String id, String address, ReadAggregator reads) {
+            this.id = id;
+            this.address = address;
+            this.reads = reads;
+        }
+    }
+
+    private final Dialer dialer;
+    private final DeviceExecutors executors;
+    private final ReadAggregator.Scheduler scheduler;
+    private final Listener listener;
+    private final int maxSessions;
+    private final ThreadPoolExecutor readers;
+    // guarded by this
+    private final Map<String, Session> sessions = new LinkedHashMap<>();
+
+    StreamSessions(Dialer dialer, DeviceExecutors executors, ReadAggregator.Scheduler scheduler,
+            Listener listener) {
+        this(dialer, executors, scheduler, listener, DEFAULT_MAX_SESSIONS);
+    }
+
+    StreamSessions(Dialer dialer, DeviceExecutors executors, ReadAggregator.Scheduler scheduler,
+            Listener listener, int maxSessions) {
+        this.dialer = dialer;
+        this.executors = executors;
+        this.scheduler = scheduler;
+        this.listener = listener;
+        this.maxSessions = maxSessions;
+
+        final AtomicInteger counter = new AtomicInteger();
+        final ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "stream-reader-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        // a closed session's reader may still be unwinding when its slot is reused, so queue
+        readers = new ThreadPoolExecutor(maxSessions, maxSessions, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), factory);
+        readers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Connects {@code id} to {@code address}, replacing whatever the session held. Completes
+     * with true, or with {@code session_limit}, {@code connect_timeout},
+     * {@code connect_cancelled} or {@code connection_failed}.
+     */
+    void open(String id, String address, String serviceUuid, long timeoutMs, ReadAggregator reads,
+            Completion done) {
+        final Session session = new Session(id, address, reads);
+        final Session replaced;
+        synchronized (this) {
+            replaced = sessions.remove(id);
+            if (sessions.size() >= maxSessions) {
+                if (replaced != null) {
+                    sessions.put(id, replaced);
+                }
+                done.error("session_limit", "at most " + maxSessions + " sessions can be open");
+                return;
+            }
+            sessions.put(id, session);
+        }
+
+        if (replaced != null) {
+            final PrinterTransport previous = release(replaced, CANCELLED);
+            if (previous != null) {
+                executors.execute(replaced.address, () -> closeQuietly(previous));
+            }
+        }
+        listener.onStatus(id, address, CONNECTING);
+        executors.execute(address, () -> connect(session, serviceUuid, timeoutMs, done));
+    }
+
+    /** Writes {@code data} after the session's earlier writes. */
+    void write(String id, byte[] data, Completion done) {
+        final Session session;
+        synchronized (this) {
+            session = sessions.get(id);
+            if (session == null || session.transport == null) {
+                done.error("write_impossible", "session " + id + " is not connected");
+                return;
+            }
+        }
+
+        executors.execute(session.address, () -> {
+            final PrinterTransport transport;
+            synchronized (this) {
+                transport = session.closed ? null : session.transport;
+            }
+            if (transport == null) {
+                done.error("write_impossible", "session " + id + " is not connected");
+                return;
+            }
+
+            try {
+                final OutputStream out = transport.getOutputStream();
+                out.write(data);
+                out.flush();
+                done.success(true);
+            } catch (IOException e) {
+                lost(session, transport);
+                done.error("write_failed", e.getMessage());
+            }
+        });
+    }
+
+    /** Aborts a connect still in progress, returns false when there was none. */
+    boolean cancel(String id) {
+        final Session session;
+        synchronized (this) {
+            session = sessions.get(id);
+            if (session == null || session.transport != null) {
+                return false;
+            }
+            sessions.remove(id);
+        }
+
+        release(session, CANCELLED);
+        listener.onStatus(id, session.address, DISCONNECTED);
+        return true;
+    }
+
+    /** Closes the session, the socket is closed on the device's executor. */
+    void close(String id, Completion done) {
+        final Session session;
+        synchronized (this) {
+            session = sessions.remove(id);
+        }
+        if (session == null) {
+            done.success(true);
+            return;
+        }
+
+        final PrinterTransport transport = release(session, CANCELLED);
+        if (transport == null) {
+            listener.onStatus(id, session.address, DISCONNECTED);
+            done.success(true);
+            return;
+        }
+
+        executors.execute(session.address, () -> {
+            try {
+                transport.close();
+                listener.onStatus(id, session.address, DISCONNECTED);
+                done.success(true);
+            } catch (IOException e) {
+                done.error("disconnect_failed", e.getMessage());
+            }
+        });
+    }
+
+    synchronized List<Map<String, Object>> list() {
+        final List<Map<String, Object>> list = new ArrayList<>();
+        for (Session session : sessions.values()) {
+            final Map<String, Object> data = new HashMap<>();
+            data.put("session", session.id);
+            data.put("address", session.address);
+            data.put("status", session.transport == null ? CONNECTING : CONNECTED);
+            list.add(data);
+        }
+        return list;
+    }
+
+    void shutdown() {
+        final List<Session> closing;
+        synchronized (this) {
+            closing = new ArrayList<>(sessions.values());
+            sessions.clear();
+        }
+
+        for (Session session : closing) {
+            final PrinterTransport transport = release(session, CANCELLED);
+            if (transport != null) {
+                closeQuietly(transport);
+            }
+        }
+        readers.shutdownNow();
+    }
+
+    // runs on the device's serial executor
+    private void connect(Session session, String serviceUuid, long timeoutMs, Completion done) {
+        final Handshake handshake;
+        try {
+            handshake = dialer.dial(session.address, serviceUuid);
+        } catch (IOException | IllegalArgumentException e) {
+            fail(session, done, "connection_failed", "could not connect to device " + session.address + ": "
+                    + e.getMessage());
+            return;
+        }
+
+        synchronized (this) {
+            if (session.closed) {
+                handshake.abort();
+                done.error(CANCELLED, "connect to device " + session.address + " was cancelled");
+                return;
+            }
+            session.handshake = handshake;
+        }
+        scheduler.schedule(() -> abort(session, handshake, TIMEOUT), timeoutMs);
+
+        final PrinterTransport transport;
+        try {
+            transport = handshake.connect(timeoutMs);
+        } catch (IOException e) {
+            final String abort;
+            synchronized (this) {
+                session.handshake = null;
+                abort = session.abort;
+            }
+            if (CANCELLED.equals(abort)) {
+                done.error(CANCELLED, "connect to device " + session.address + " was cancelled");
+            } else if (TIMEOUT.equals(abort) || e instanceof SocketTimeoutException) {
+                fail(session, done, TIMEOUT, "no answer from device " + session.address + " within "
+                        + timeoutMs + " ms");
+            } else {
+                fail(session, done, "connection_failed", "could not connect to device " + session.address
+                        + ": " + e.getMessage());
+            }
+            return;
+        }
+
+        final String abort;
+        synchronized (this) {
+            session.handshake = null;
+            abort = session.abort;
+            if (abort == null) {
+                session.transport = transport;
+            }
+        }
+        if (abort != null) {
+            // aborted just as the handshake completed
+            closeQuietly(transport);
+            if (CANCELLED.equals(abort)) {
+                done.error(CANCELLED, "connect to device " + session.address + " was cancelled");
+            } else {
+                fail(session, done, TIMEOUT, "no answer from device " + session.address + " within "
+                        + timeoutMs + " ms");
+            }
+            return;
+        }
+
+        readers.execute(() -> read(session, transport));
+        listener.onStatus(session.id, session.address, CONNECTED);
+        done.success(true);
+    }
+
+    private void read(Session session, PrinterTransport transport) {
+        final ReceiveBuffer receive = ReceiveBuffer.obtain();
+        final ReceiveBuffer.Sink sink = (data, length) -> session.reads.offer(data, 0, length);
+        try {
+            final InputStream in = transport.getInputStream();
+            while (!Thread.currentThread().isInterrupted()) {
+                receive.read(in, sink);
+            }
+        } catch (IOException e) {
+            lost(session, transport);
+        } finally {
+            receive.release();
+        }
+    }
+
+    // the device went away, unless the session was closed on purpose
+    private void lost(Session session, PrinterTransport transport) {
+        synchronized (this) {
+            if (session.closed || session.transport != transport) {
+                return;
+            }
+            session.closed = true;
+            if (sessions.get(session.id) == session) {
+                sessions.remove(session.id);
+            }
+        }
+
+        closeQuietly(transport);
+        listener.onStatus(session.id, session.address, DISCONNECTED);
+    }
+
+    private void fail(Session session, Completion done, String code, String message) {
+        synchronized (this) {
+            session.closed = true;
+            if (sessions.get(session.id) == session) {
+                sessions.remove(session.id);
+            }
+        }
+        listener.onStatus(session.id, session.address, DISCONNECTED);
+        done.error(code, message);
+    }
+
+    private void abort(Session session, Handshake handshake, String reason) {
+        synchronized (this) {
+            if (session.handshake != handshake || session.abort != null) {
+                return;
+            }
+            session.abort = reason;
+        }
+        // unblocks connect() on the executor thread
+        handshake.abort();
+    }
+
+    /**
+     * Marks a session removed from the map as closed, aborts its handshake and returns its
+     * transport for the caller to close.
+     */
+    private PrinterTransport release(Session session, String reason) {
+        final Handshake handshake;
+        final PrinterTransport transport;
+        synchronized (this) {
+            session.closed = true;
+            if (session.abort == null) {
+                session.abort = reason;
+            }
+            handshake = session.handshake;
+            transport = session.transport;
+        }
+
+        if (handshake != null) {
+            handshake.abort();
+        }
+        return transport;
+    }
+
+    private static void closeQuietly(PrinterTransport transport) {
+        try {
+            transport.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package id.flutter.plugins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Raw TCP connection to a network printer, for addresses like {@code tcp://10.0.0.5:9100}.
+ *
+ * The channel stays non-blocking: the connect is bounded by a selector timeout instead of the
+ * OS default of a minute or more, and reads and writes wait on separate selectors so the reader
+ * thread blocked on input never holds up a writer (the streams of {@code Channels} share one
+ * lock and would). Nagle is off since jobs are already written in whole chunks, keep-alive
+ * lets a printer that was switched off show up as a dead socket in the pool's probes.
+ */
+class TcpTransport implements PrinterTransport {
+    static final String SCHEME = "tcp://";
+    static final int DEFAULT_PORT = 9100;
+    static final int DEFAULT_CONNECT_TIMEOUT_MS = 5000;
+    // a printer out of paper stops draining its socket, StatusMonitor pauses for as long
+    static final long WRITE_TIMEOUT_MS = StatusMonitor.DEFAULT_MAX_PAUSE_MS;
+
+    private final String address;
+    private final SocketChannel channel;
+    private final Selector readSelector;
+    private final Selector writeSelector;
+    private final InputStream in = new Input();
+    private final OutputStream out = new Output();
+
+    // guarded by in, bytes read ahead by available()
+    private final ByteBuffer pending = ByteBuffer.allocate(ReceiveBuffer.CAPACITY);
+    private boolean eof;
+
+    private TcpTransport(String address, SocketChannel channel) throws IOException {
+        this.address = address;
+        this.channel = channel;
+        this.readSelector = Selector.open();
+        this.writeSelector = Selector.open();
+        channel.register(readSelector, SelectionKey.OP_READ);
+        channel.register(writeSelector, SelectionKey.OP_WRITE);
+        pending.flip();
+    }
+
+    static boolean isTcp(String address) {
+        return address != null && address.startsWith(SCHEME);
+    }
+
+    static TcpTransport connect(String address, long timeoutMs) throws IOException {
+        return new Connect(address).finish(timeoutMs);
+    }
+
+    private static InetSocketAddress parse(String address) throws IOException {
+        try {
+            final URI uri = new URI(address);
+            if (uri.getHost() == null) {
+                throw new IOException("invalid printer address " + address);
+            }
+            return new InetSocketAddress(uri.getHost(), uri.getPort() < 0 ? DEFAULT_PORT : uri.getPort());
+        } catch (URISyntaxException e) {
+            throw new IOException("invalid printer address " + address);
+        }
+    }
+
+    @Override
+    public String getAddress() {
+        return address;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return in;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return out;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return channel.isOpen() && channel.isConnected();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            // wakes a reader or writer waiting in select
+            readSelector.close();
+            writeSelector.close();
+        }
+    }
+
+    /**
+     * A connect another thread can abort: {@link #abort()} closes the pending channel and wakes
+     * the selector, so {@link #finish(long)} throws right away instead of running into its timeout.
+     */
+    static final class Connect {
+        private final String address;
+        private final SocketChannel channel;
+        private final Selector selector;
+        private boolean aborted;
+
+        Connect(String address) throws IOException {
+            this.address = address;
+            this.channel = SocketChannel.open();
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                channel.socket().setKeepAlive(true);
+                this.selector = Selector.open();
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        TcpTransport finish(long timeoutMs) throws IOException {
+            try {
+                if (!channel.connect(parse(address))) {
+                    channel.register(selector, SelectionKey.OP_CONNECT);
+                    final long deadline = System.nanoTime() + timeoutMs * 1000000L;
+                    while (!channel.finishConnect()) {
+                        final long remaining = (deadline - System.nanoTime()) / 1000000L;
+                        if (remaining <= 0) {
+                            throw new SocketTimeoutException("connect to " + address + " timed out");
+                        }
+                        selector.select(remaining);
+                        selector.selectedKeys().clear();
+                    }
+                }
+                synchronized (this) {
+                    if (aborted) {
+                        throw new IOException("connect to " + address + " was aborted");
+                    }
+                    selector.close();
+                }
+                return new TcpTransport(address, channel);
+            } catch (IOException e) {
+                channel.close();
+                synchronized (this) {
+                    selector.close();
+                    if (aborted) {
+                        throw new IOException("connect to " + address + " was aborted");
+                    }
+                }
+                throw e;
+            }
+        }
+
+        void abort() {
+            synchronized (this) {
+                aborted = true;
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+                if (selector.isOpen()) {
+                    selector.wakeup();
+                }
+            }
+        }
+    }
+
+    private final class Input extends InputStream {
+        @Override
+        public int read() throws IOException {
+            final byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+
+            while (true) {
+                synchronized (this) {
+                    if (fill() > 0) {
+                        final int count = Math.min(length, pending.remaining());
+                        pending.get(buffer, offset, count);
+                        return count;
+                    }
+                    if (eof) {
+                        return -1;
+                    }
+                }
+
+                try {
+                    readSelector.select();
+                    readSelector.selectedKeys().clear();
+                } catch (ClosedSelectorException e) {
+                    return -1;
+                }
+            }
+        }
+
+        /** Reads ahead without blocking, throws once the printer closed the connection. */
+        @Override
+        public synchronized int available() throws IOException {
+            final int count = fill();
+            if (count == 0 && eof) {
+                throw new IOException("connection closed by printer");
+            }
+            return count;
+        }
+
+        // called with the lock held, returns the bytes ready in pending
+        private int fill() throws IOException {
+            if (!pending.hasRemaining() && !eof) {
+                pending.clear();
+                final int count = channel.read(pending);
+                pending.flip();
+                eof = count < 0;
+            }
+            return pending.remaining();
+        }
+    }
+
+    private final class Output extends OutputStream {
+        private final byte[] single = new byte[1];
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            single[0] = (byte) b;
+            write(single, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] data, int offset, int length) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+            // restarted whenever the printer takes data, select also returns early on wakeups
+            long deadline = System.nanoTime() + WRITE_TIMEOUT_MS * 1000000L;
+            while (buffer.hasRemaining()) {
+                if (channel.write(buffer) > 0) {
+                    deadline = System.nanoTime() + WRITE_TIMEOUT_MS * 1000000L;
+                    continue;
+                }
+
+                // the printer's receive window is full
+                final long remaining = (deadline - System.nanoTime()) / 1000000L;
+                if (remaining <= 0) {
+                    throw new SocketTimeoutException("printer stopped accepting data");
+                }
+                try {
+                    writeSelector.select(remaining);
+                    writeSelector.selectedKeys().clear();
+                } catch (ClosedSelectorException e) {
+                    throw new IOException("connection closed");
+                }
+            }
+        }
+    }
+}
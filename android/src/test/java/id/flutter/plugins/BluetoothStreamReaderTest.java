@@ -0,0 +1,179 @@
+package id.flutter.plugins;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BluetoothStreamReaderTest {
+    /** A socket whose printer answers every {@code DLE EOT n} with {@code status}. */
+    private static class FakeTransport implements PrinterTransport {
+        final LinkedBlockingQueue<Integer> incoming = new LinkedBlockingQueue<>();
+        volatile int status = 0x12;
+        volatile boolean answer = true;
+
+        private final InputStream in = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                try {
+                    return incoming.take();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (length == 0) {
+                    return 0;
+                }
+                buffer[offset] = (byte) read();
+                int count = 1;
+                Integer next;
+                while (count < length && (next = incoming.poll()) != null) {
+                    buffer[offset + count++] = (byte) (int) next;
+                }
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return incoming.size();
+            }
+        };
+
+        private final OutputStream out = new OutputStream() {
+            private int previous = -1;
+
+            @Override
+            public void write(int b) {
+                if (previous == 0x04 && answer) {
+                    incoming.add(status);
+                }
+                previous = b & 0xFF;
+            }
+        };
+
+        void receive(int... bytes) {
+            for (int b : bytes) {
+                incoming.add(b);
+            }
+        }
+
+        @Override
+        public String getAddress() {
+            return "00:11:22:33:44:55";
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return in;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return out;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final byte[] STATUS_REQUEST = { 0x10, 0x04, 1 };
+
+    private final DeviceExecutors executors = new DeviceExecutors(1, 2);
+
+    @After
+    public void tearDown() {
+        executors.shutdown();
+    }
+
+    private void awaitIdleReaders() throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (((Number) executors.metrics().get("readers")).intValue() != 0) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("reader thread still running");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void requestReturnsTheAnswer() throws Exception {
+        final FakeTransport transport = new FakeTransport();
+        final BluetoothStreamReader reader = new BluetoothStreamReader(transport, executors, data -> { }, e -> { });
+
+        assertArrayEquals(new byte[] { 0x12 },
+                reader.request(STATUS_REQUEST, BluetoothStreamReader.fixedLength(1), 2000));
+    }
+
+    @Test
+    public void requestTimesOutWithoutAnswer() throws Exception {
+        final FakeTransport transport = new FakeTransport();
+        transport.answer = false;
+        final BluetoothStreamReader reader = new BluetoothStreamReader(transport, executors, data -> { }, e -> { });
+
+        assertNull(reader.request(STATUS_REQUEST, BluetoothStreamReader.fixedLength(1), 50));
+    }
+
+    @Test
+    public void readerThreadEndsAfterStopReading() throws Exception {
+        final FakeTransport transport = new FakeTransport();
+        final LinkedBlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+        final BluetoothStreamReader reader = new BluetoothStreamReader(transport, executors, received::add,
+                e -> { });
+
+        reader.startReading();
+        transport.receive(1, 2);
+        // the fake socket may hand the bytes over in one frame or two
+        final ByteArrayOutputStream delivered = new ByteArrayOutputStream();
+        while (delivered.size() < 2) {
+            final byte[] frame = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(frame);
+            delivered.write(frame, 0, frame.length);
+        }
+        assertArrayEquals(new byte[] { 1, 2 }, delivered.toByteArray());
+
+        reader.stopReading();
+        // the blocked read returns with the next byte and the thread gives its slot back
+        transport.receive(3);
+        awaitIdleReaders();
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void discardsBytesThatArrivedWhileNobodyRead() throws Exception {
+        final FakeTransport transport = new FakeTransport();
+        final BluetoothStreamReader reader = new BluetoothStreamReader(transport, executors, data -> { }, e -> { });
+        assertArrayEquals(new byte[] { 0x12 },
+                reader.request(STATUS_REQUEST, BluetoothStreamReader.fixedLength(1), 2000));
+        // unblocks the idle reader so it ends
+        transport.receive(0);
+        awaitIdleReaders();
+
+        // a late answer to an earlier request still sits in the socket
+        transport.receive(0x16);
+        transport.status = 0x1E;
+        assertArrayEquals(new byte[] { 0x1E },
+                reader.request(STATUS_REQUEST, BluetoothStreamReader.fixedLength(1), 2000));
+        assertEquals(0, transport.incoming.size());
+    }
+}
@@ -0,0 +1,150 @@
+package id.flutter.plugins;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkedWriterTest {
+    /** Records the size of every write and optionally blocks in it like a congested link. */
+    private static class RecordingOutput extends OutputStream {
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        final List<Integer> writes = new ArrayList<>();
+        final long blockMs;
+        int flushes;
+
+        RecordingOutput(long blockMs) {
+            this.blockMs = blockMs;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) {
+            writes.add(length);
+            written.write(data, offset, length);
+            if (blockMs > 0) {
+                try {
+                    Thread.sleep(blockMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+
+    private static byte[] payload(int size) {
+        final byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    @Test
+    public void splitsIntoChunksAndReportsProgress() throws Exception {
+        final RecordingOutput out = new RecordingOutput(0);
+        final List<int[]> progress = new ArrayList<>();
+
+        new ChunkedWriter(out, 4, 0).write(payload(10), (total, sent) -> progress.add(new int[] { total, sent }));
+
+        assertEquals(Arrays.asList(4, 4, 2), out.writes);
+        assertEquals(3, out.flushes);
+        assertArrayEquals(payload(10), out.written.toByteArray());
+        assertEquals(4, progress.size());
+        for (int i = 0; i < progress.size(); i++) {
+            assertEquals(10, progress.get(i)[0]);
+            assertEquals(Math.min(10, i * 4), progress.get(i)[1]);
+        }
+    }
+
+    @Test
+    public void writesOnceWithoutChunkSize() throws Exception {
+        final RecordingOutput out = new RecordingOutput(0);
+        new ChunkedWriter(out, 0, 50).write(payload(100), 10, 80, null);
+
+        assertEquals(Arrays.asList(80), out.writes);
+        assertArrayEquals(Arrays.copyOfRange(payload(100), 10, 90), out.written.toByteArray());
+    }
+
+    @Test
+    public void doesNotPaceWithoutDelayTime() throws Exception {
+        final RecordingOutput out = new RecordingOutput(0);
+        final long start = System.nanoTime();
+
+        new ChunkedWriter(out, 1, 0).write(payload(200), null);
+
+        final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(200, out.writes.size());
+        assertTrue("took " + elapsedMs + " ms", elapsedMs < 100);
+    }
+
+    @Test
+    public void pacesChunksByDelayTime() throws Exception {
+        final RecordingOutput out = new RecordingOutput(0);
+        final long start = System.nanoTime();
+
+        new ChunkedWriter(out, 10, 30).write(payload(50), null);
+
+        // four slots between five chunks, none after the last
+        final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("took " + elapsedMs + " ms", elapsedMs >= 120);
+        assertTrue("took " + elapsedMs + " ms", elapsedMs < 400);
+    }
+
+    @Test
+    public void countsBlockedWritesTowardsTheDelay() throws Exception {
+        final RecordingOutput out = new RecordingOutput(50);
+        final long start = System.nanoTime();
+
+        new ChunkedWriter(out, 10, 40).write(payload(50), null);
+
+        // a link slower than the pace is not slowed down further: 5 x 50 ms, not 5 x 50 + 4 x 40
+        final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("took " + elapsedMs + " ms", elapsedMs >= 250);
+        assertTrue("took " + elapsedMs + " ms", elapsedMs < 370);
+    }
+
+    @Test
+    public void runsGateBeforeEveryChunk() throws Exception {
+        final RecordingOutput out = new RecordingOutput(0);
+        final List<Integer> writtenBeforeGate = new ArrayList<>();
+        final ChunkedWriter.ChunkGate gate = stream -> {
+            writtenBeforeGate.add(out.written.size());
+            stream.write(new byte[] { 0x10, 0x04, 1 });
+        };
+
+        new ChunkedWriter(out, 4, 0, gate).write(payload(8), null);
+
+        assertEquals(Arrays.asList(0, 7), writtenBeforeGate);
+        assertEquals(Arrays.asList(3, 4, 3, 4), out.writes);
+    }
+
+    @Test(expected = IOException.class)
+    public void propagatesWriteFailures() throws Exception {
+        final OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("broken pipe");
+            }
+        };
+        new ChunkedWriter(broken, 4, 0).write(payload(8), null);
+    }
+}
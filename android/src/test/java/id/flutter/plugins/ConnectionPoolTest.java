@@ -0,0 +1,183 @@
+package id.flutter.plugins;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionPoolTest {
+    private static class FakeTransport implements PrinterTransport {
+        final String address;
+        volatile boolean closed;
+
+        FakeTransport(String address) {
+            this.address = address;
+        }
+
+        @Override
+        public String getAddress() {
+            return address;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return new ByteArrayOutputStream();
+        }
+
+        @Override
+        public boolean isConnected() {
+            return !closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private final Map<String, List<FakeTransport>> connected = new HashMap<>();
+    private DeviceExecutors executors;
+    private ConnectionPool pool;
+
+    @Before
+    public void setUp() {
+        executors = new DeviceExecutors();
+        pool = new ConnectionPool(address -> {
+            final FakeTransport transport = new FakeTransport(address);
+            synchronized (connected) {
+                if (!connected.containsKey(address)) {
+                    connected.put(address, new ArrayList<>());
+                }
+                connected.get(address).add(transport);
+            }
+            return transport;
+        }, executors, 2, ConnectionPool.DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+        executors.shutdown();
+    }
+
+    // evictions close on the printer's serial executor, wait for what is queued there
+    private void settle(String... addresses) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(addresses.length);
+        for (String address : addresses) {
+            executors.execute(address, done::countDown);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    private FakeTransport first(String address) {
+        synchronized (connected) {
+            return connected.get(address).get(0);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> pooled() {
+        return (List<String>) pool.stats().get("addresses");
+    }
+
+    @Test
+    public void reusesPooledSockets() throws IOException {
+        final PrinterTransport first = pool.acquire("a");
+        assertSame(first, pool.acquire("a"));
+
+        assertEquals(1, connected.get("a").size());
+        assertEquals(1L, pool.stats().get("hits"));
+        assertEquals(1L, pool.stats().get("misses"));
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedBeyondMaxSize() throws Exception {
+        pool.acquire("a");
+        pool.acquire("b");
+        pool.acquire("a");
+        pool.acquire("c");
+        settle("a", "b", "c");
+
+        assertEquals(Arrays.asList("a", "c"), sortedPooled());
+        assertTrue(first("b").closed);
+        assertFalse(first("a").closed);
+        assertEquals(1L, pool.stats().get("sizeEvictions"));
+    }
+
+    @Test
+    public void neverEvictsPinnedSockets() throws Exception {
+        pool.pin("a");
+        pool.pin("b");
+        pool.acquire("a");
+        pool.acquire("b");
+        pool.acquire("c");
+        settle("a", "b", "c");
+
+        // pinned sockets may take the pool past its size
+        assertEquals(Arrays.asList("a", "b", "c"), sortedPooled());
+        assertFalse(first("a").closed);
+        assertFalse(first("b").closed);
+        assertEquals(0L, pool.stats().get("sizeEvictions"));
+
+        pool.acquire("d");
+        settle("c", "d");
+        assertEquals(Arrays.asList("a", "b", "d"), sortedPooled());
+        assertTrue(first("c").closed);
+    }
+
+    @Test
+    public void releaseKeepsPinnedSockets() throws Exception {
+        pool.pin("a");
+        pool.acquire("a");
+        pool.acquire("b");
+
+        pool.release("a");
+        pool.release("b");
+
+        assertEquals(Collections.singletonList("a"), pooled());
+        assertFalse(first("a").closed);
+        assertTrue(first("b").closed);
+    }
+
+    @Test
+    public void retryReconnects() throws IOException {
+        final PrinterTransport first = pool.acquire("a");
+        pool.invalidateForRetry("a");
+        final PrinterTransport second = pool.acquire("a");
+
+        assertNotSame(first, second);
+        assertTrue(first("a").closed);
+        assertEquals(1L, pool.stats().get("retries"));
+        assertEquals(2L, pool.stats().get("misses"));
+    }
+
+    private List<String> sortedPooled() {
+        final List<String> addresses = new ArrayList<>(pooled());
+        Collections.sort(addresses);
+        return addresses;
+    }
+}
@@ -0,0 +1,115 @@
+package id.flutter.plugins;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DitherTest {
+    private static final int BLACK = 0xFF000000;
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int GRAY = 0xFF808080;
+
+    private static byte[] pack(Dither dither, int[] row, int width, int rows) {
+        final int widthBytes = EscPosRaster.widthBytes(width);
+        final byte[] out = new byte[widthBytes * rows];
+        for (int y = 0; y < rows; y++) {
+            dither.packRow(row, 0, out, y * widthBytes);
+        }
+        return out;
+    }
+
+    private static int blackPixels(byte[] bits) {
+        int count = 0;
+        for (byte b : bits) {
+            count += Integer.bitCount(b & 0xFF);
+        }
+        return count;
+    }
+
+    @Test
+    public void thresholdSetsBitsForDarkPixels() {
+        final int[] row = new int[10];
+        Arrays.fill(row, WHITE);
+        row[0] = BLACK;
+        row[7] = BLACK;
+        row[9] = 0xFF202020;
+
+        assertArrayEquals(new byte[] { (byte) 0x81, 0x40 }, pack(Dither.threshold(10), row, 10, 1));
+    }
+
+    @Test
+    public void transparentPixelsAreWhite() {
+        final int[] row = new int[8];
+        Arrays.fill(row, 0x00000000);
+
+        assertArrayEquals(new byte[] { 0 }, pack(Dither.threshold(8), row, 8, 1));
+    }
+
+    @Test
+    public void orderedDitherCoversHalfOfMidGray() {
+        final int[] row = new int[8];
+        Arrays.fill(row, GRAY);
+
+        // one full 8 x 8 Bayer tile, 32 of its 64 thresholds lie above 128
+        assertEquals(32, blackPixels(pack(new Dither(Dither.ORDERED, 8, 1, 1), row, 8, 8)));
+    }
+
+    @Test
+    public void errorDiffusionKeepsTheAverageTone() {
+        final int[] row = new int[64];
+        Arrays.fill(row, GRAY);
+
+        for (String algorithm : new String[] { Dither.FLOYD_STEINBERG, Dither.ATKINSON }) {
+            final int black = blackPixels(pack(new Dither(algorithm, 64, 1, 1), row, 64, 64));
+            assertTrue(algorithm + " set " + black + " of 4096", black > 1700 && black < 2400);
+        }
+    }
+
+    @Test
+    public void errorDiffusionLeavesSolidAreasSolid() {
+        final int[] black = new int[16];
+        Arrays.fill(black, BLACK);
+        final int[] white = new int[16];
+        Arrays.fill(white, WHITE);
+
+        for (String algorithm : new String[] { Dither.FLOYD_STEINBERG, Dither.ATKINSON }) {
+            assertEquals(16 * 4, blackPixels(pack(new Dither(algorithm, 16, 1, 1), black, 16, 4)));
+            assertEquals(0, blackPixels(pack(new Dither(algorithm, 16, 1, 1), white, 16, 4)));
+        }
+    }
+
+    @Test
+    public void contrastPushesGrayToBlackOrWhite() {
+        final int[] dark = new int[8];
+        Arrays.fill(dark, 0xFF707070);
+
+        assertEquals(0, blackPixels(pack(new Dither(Dither.THRESHOLD, 8, 0.5, 1), dark, 8, 1)));
+        assertEquals(8, blackPixels(pack(new Dither(Dither.THRESHOLD, 8, 1, 4), dark, 8, 1)));
+    }
+
+    @Test
+    public void paddingBitsStayClear() {
+        final int[] row = new int[12];
+        Arrays.fill(row, BLACK);
+
+        for (String algorithm : new String[] { Dither.THRESHOLD, Dither.FLOYD_STEINBERG, Dither.ATKINSON,
+                Dither.ORDERED }) {
+            assertArrayEquals(algorithm, new byte[] { (byte) 0xFF, (byte) 0xF0 },
+                    pack(new Dither(algorithm, 12, 1, 1), row, 12, 1));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownAlgorithm() {
+        new Dither("halftone", 8, 1, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveGamma() {
+        new Dither(Dither.THRESHOLD, 8, 0, 1);
+    }
+}
@@ -0,0 +1,115 @@
+package id.flutter.plugins;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FragmentCacheTest {
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(ASCII);
+    }
+
+    private static List<Object> parts(Object... parts) {
+        return new ArrayList<>(Arrays.asList(parts));
+    }
+
+    @Test
+    public void fillsPlaceholdersAndSplicesLiterals() throws Exception {
+        final FragmentCache cache = new FragmentCache();
+        cache.put("header", ascii("Table {{table}}, {{waiter.name}}{{missing}}!"), true);
+
+        final Map<String, byte[]> values = new HashMap<>();
+        values.put("table", ascii("12"));
+        values.put("waiter.name", ascii("Ann"));
+
+        assertArrayEquals(ascii("> Table 12, Ann! <"),
+                cache.compile(parts(ascii("> "), "header", ascii(" <")), values));
+    }
+
+    @Test
+    public void leavesRawFragmentsUntouched() throws Exception {
+        final FragmentCache cache = new FragmentCache();
+        cache.put("logo", ascii("{{table}}"), false);
+
+        final Map<String, byte[]> values = new HashMap<>();
+        values.put("table", ascii("12"));
+
+        assertArrayEquals(ascii("{{table}}"), cache.compile(parts("logo"), values));
+    }
+
+    @Test
+    public void ignoresBracesThatAreNotPlaceholders() throws Exception {
+        final FragmentCache cache = new FragmentCache();
+        cache.put("text", ascii("{{}} {{a b}} {x}"), true);
+
+        assertArrayEquals(ascii("{{}} {{a b}} {x}"), cache.compile(parts("text"), new HashMap<>()));
+    }
+
+    @Test
+    public void reportsMissingFragments() {
+        final FragmentCache cache = new FragmentCache();
+        try {
+            cache.compile(parts("footer"), new HashMap<>());
+            fail("compiled a missing fragment");
+        } catch (FragmentCache.MissingFragmentException e) {
+            assertEquals("footer", e.id);
+        }
+        assertEquals(1L, cache.stats().get("misses"));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedBeyondBudget() throws Exception {
+        final FragmentCache cache = new FragmentCache(10);
+        cache.put("a", new byte[4], false);
+        cache.put("b", new byte[4], false);
+        cache.compile(parts("a"), new HashMap<>());
+        cache.put("c", new byte[4], false);
+
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertEquals(8L, cache.stats().get("sizeBytes"));
+        assertEquals(1L, cache.stats().get("evictions"));
+    }
+
+    @Test
+    public void replacingAFragmentKeepsTheSizeExact() {
+        final FragmentCache cache = new FragmentCache(10);
+        cache.put("a", new byte[6], false);
+        cache.put("a", new byte[8], false);
+
+        assertEquals(8L, cache.stats().get("sizeBytes"));
+        assertTrue(cache.remove("a"));
+        assertFalse(cache.remove("a"));
+        assertEquals(0L, cache.stats().get("sizeBytes"));
+    }
+
+    @Test
+    public void shrinkingTheBudgetEvicts() {
+        final FragmentCache cache = new FragmentCache(10);
+        cache.put("a", new byte[4], false);
+        cache.put("b", new byte[4], false);
+        cache.setBudget(5);
+
+        assertFalse(cache.contains("a"));
+        assertTrue(cache.contains("b"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsFragmentsLargerThanTheBudget() {
+        new FragmentCache(10).put("a", new byte[11], false);
+    }
+}
@@ -0,0 +1,101 @@
+package id.flutter.plugins;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class JobMetricsTest {
+    private static final String ADDRESS = "00:11:22:33:44:55";
+
+    private final List<Map<String, Object>> published = new ArrayList<>();
+    private final JobMetrics metrics = new JobMetrics(published::add);
+
+    private void finish(long writeMs, long bytes, Exception error) {
+        final JobMetrics.Job job = metrics.start(ADDRESS, "write");
+        job.begin();
+        job.writeNanos = writeMs * 1000000L;
+        job.bytes = bytes;
+        metrics.finish(job, error);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> printer() {
+        return (Map<String, Object>) ((Map<String, Object>) metrics.snapshot().get("printers")).get(ADDRESS);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> window(String name) {
+        return (Map<String, Object>) printer().get(name);
+    }
+
+    @Test
+    public void nearestRankPercentiles() {
+        for (int ms = 100; ms >= 1; ms--) {
+            finish(ms, 1000, null);
+        }
+
+        final Map<String, Object> writeMs = window("writeMs");
+        assertEquals(100, writeMs.get("count"));
+        assertEquals(50L, writeMs.get("p50"));
+        assertEquals(95L, writeMs.get("p95"));
+        assertEquals(99L, writeMs.get("p99"));
+        assertEquals(100L, writeMs.get("max"));
+    }
+
+    @Test
+    public void smallWindowsRoundUp() {
+        finish(10, 1000, null);
+        finish(20, 1000, null);
+        finish(30, 1000, null);
+
+        final Map<String, Object> writeMs = window("writeMs");
+        assertEquals(20L, writeMs.get("p50"));
+        assertEquals(30L, writeMs.get("p95"));
+    }
+
+    @Test
+    public void windowKeepsTheLatestJobsOnly() {
+        for (int i = 0; i < JobMetrics.WINDOW; i++) {
+            finish(1000, 1000, null);
+        }
+        for (int i = 0; i < JobMetrics.WINDOW; i++) {
+            finish(1, 1000, null);
+        }
+
+        assertEquals(JobMetrics.WINDOW, window("writeMs").get("count"));
+        assertEquals(1L, window("writeMs").get("max"));
+        assertEquals(2L * JobMetrics.WINDOW, printer().get("jobs"));
+    }
+
+    @Test
+    public void failuresStayOutOfThroughput() {
+        finish(100, 1000, null);
+        finish(1, 0, new IOException("broken pipe"));
+
+        assertEquals(2L, printer().get("jobs"));
+        assertEquals(1L, printer().get("failures"));
+        assertEquals(1000L, printer().get("bytes"));
+        assertEquals(1, window("writeMs").get("count"));
+        assertEquals(10000L, window("bytesPerSecond").get("p50"));
+        assertEquals(2, window("totalMs").get("count"));
+
+        assertEquals(2, published.size());
+        assertEquals(false, published.get(1).get("success"));
+        assertEquals("broken pipe", published.get(1).get("error"));
+    }
+
+    @Test
+    public void emptyWindowsReportZero() {
+        finish(1, 0, new IOException("broken pipe"));
+
+        final Map<String, Object> writeMs = window("writeMs");
+        assertEquals(0, writeMs.get("count"));
+        assertEquals(0L, writeMs.get("p99"));
+        assertEquals(0L, writeMs.get("max"));
+    }
+}
@@ -0,0 +1,258 @@
+package id.flutter.plugins;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PrintJobQueueTest {
+    private static final String ADDRESS = "00:11:22:33:44:55";
+
+    private final List<byte[]> printed = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> accepted = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> rejected = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private DeviceExecutors executors;
+    private DeviceExecutors crashed;
+    private File store;
+    private PrintJobQueue queue;
+
+    @Before
+    public void setUp() throws IOException {
+        executors = new DeviceExecutors();
+        store = Files.createTempDirectory("print_jobs").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (queue != null) {
+            queue.shutdown();
+        }
+        executors.shutdown();
+        if (crashed != null) {
+            crashed.shutdown();
+        }
+        final File[] files = store.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        store.delete();
+    }
+
+    private PrintJobQueue newQueue(boolean block) {
+        return new PrintJobQueue(executors, (address, data, maxBufferSize, delayTime) -> {
+            writing.countDown();
+            if (block) {
+                release.await();
+            }
+            printed.add(data);
+        }, store);
+    }
+
+    private final PrintJobQueue.Admission admission = new PrintJobQueue.Admission() {
+        @Override
+        public void accepted(long jobId) {
+            accepted.add(jobId);
+        }
+
+        @Override
+        public void rejected(String reason) {
+            rejected.add(reason);
+        }
+    };
+
+    private void enqueue(byte[] data) {
+        queue.enqueue(new PrintJobQueue.Job(ADDRESS, data, 512, 0), admission);
+    }
+
+    private static void await(String what, Condition condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.met()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("timed out waiting for " + what);
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private interface Condition {
+        boolean met();
+    }
+
+    private boolean isCompleted(long id) {
+        final Map<String, Object> status = queue.status(id);
+        return status != null && PrintJobQueue.STATUS_COMPLETED.equals(status.get("status"));
+    }
+
+    private byte[] printedBytes() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        synchronized (printed) {
+            for (byte[] data : printed) {
+                out.write(data, 0, data.length);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private void writeJobFile(String name, byte[] data) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(store, name)))) {
+            out.writeUTF(ADDRESS);
+            out.writeInt(512);
+            out.writeInt(0);
+            out.writeInt(data.length);
+            out.write(data);
+        }
+    }
+
+    @Test
+    public void parksJobsBeyondTheQueueAndRejectsBeyondTheWaitingList() throws Exception {
+        queue = newQueue(true);
+        enqueue(new byte[] { 1 });
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < PrintJobQueue.MAX_QUEUED_JOBS + PrintJobQueue.MAX_WAITING_JOBS + 1; i++) {
+            enqueue(new byte[] { 2 });
+        }
+        await("the rejection", () -> !rejected.isEmpty());
+
+        // the printing job and a full queue are acknowledged, the waiting ones are not yet
+        assertEquals(1 + PrintJobQueue.MAX_QUEUED_JOBS, accepted.size());
+        assertEquals(Collections.singletonList("queue_full"), rejected);
+        // but they are already stored, next to the queued ones and the printing one
+        assertEquals(1 + PrintJobQueue.MAX_QUEUED_JOBS + PrintJobQueue.MAX_WAITING_JOBS,
+                store.listFiles().length);
+
+        release.countDown();
+        final int total = 1 + PrintJobQueue.MAX_QUEUED_JOBS + PrintJobQueue.MAX_WAITING_JOBS;
+        await("every job to be admitted", () -> accepted.size() == total);
+        await("every job to print", () -> {
+            final List<Map<String, Object>> jobs = queue.list();
+            for (Map<String, Object> job : jobs) {
+                if (!PrintJobQueue.STATUS_COMPLETED.equals(job.get("status"))) {
+                    return false;
+                }
+            }
+            return jobs.size() == total;
+        });
+
+        for (int i = 0; i < total; i++) {
+            assertEquals(i + 1L, (long) accepted.get(i));
+        }
+        assertEquals(total, printedBytes().length);
+        assertEquals(0, store.listFiles().length);
+    }
+
+    @Test
+    public void batchesAdjacentJobsWithTheSameOptions() throws Exception {
+        queue = newQueue(true);
+        enqueue(new byte[] { 1 });
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        enqueue(new byte[] { 2 });
+        enqueue(new byte[] { 3 });
+        await("the queued jobs", () -> accepted.size() == 3);
+
+        release.countDown();
+        await("both writes", () -> printed.size() == 2);
+        assertArrayEquals(new byte[] { 2, 3 }, printed.get(1));
+    }
+
+    @Test
+    public void restoresQueuedJobsUnderTheirIds() throws Exception {
+        writeJobFile("7.job", new byte[] { 7, 7 });
+        writeJobFile("3.job", new byte[] { 3 });
+
+        queue = newQueue(false);
+        await("the restored jobs", () -> printedBytes().length == 3);
+
+        // in id order, possibly batched into one write
+        assertArrayEquals(new byte[] { 3, 7, 7 }, printedBytes());
+        await("job 7 to complete", () -> isCompleted(7));
+
+        // new jobs continue after the highest restored id
+        enqueue(new byte[] { 8 });
+        await("the new job", () -> isCompleted(8) && accepted.size() == 1);
+        assertEquals(8L, (long) accepted.get(0));
+    }
+
+    @Test
+    public void restoresJobsThatWerePrintingAsFailed() throws Exception {
+        writeJobFile("2.printing", new byte[] { 2 });
+        writeJobFile("5.job", new byte[] { 5 });
+
+        queue = newQueue(false);
+        await("the queued job", () -> printed.size() == 1);
+
+        assertArrayEquals(new byte[] { 5 }, printed.get(0));
+        final Map<String, Object> interrupted = queue.status(2);
+        assertEquals(PrintJobQueue.STATUS_FAILED, interrupted.get("status"));
+        assertEquals(PrintJobQueue.ERROR_INTERRUPTED, interrupted.get("error"));
+        assertFalse(new File(store, "2.printing").exists());
+        await("job 5 to complete", () -> isCompleted(5));
+
+        // still reported after another restart, until the app acknowledges it
+        queue.shutdown();
+        queue = newQueue(false);
+        await("the restored marker", () -> queue.status(2) != null);
+        assertEquals(PrintJobQueue.STATUS_FAILED, queue.status(2).get("status"));
+        assertEquals(1, printed.size());
+
+        assertTrue(queue.acknowledge(2));
+        assertFalse(queue.acknowledge(2));
+        await("the marker to be deleted", () -> store.listFiles().length == 0);
+        assertEquals(0, queue.list().size());
+    }
+
+    @Test
+    public void restoresParkedJobs() throws Exception {
+        queue = newQueue(true);
+        enqueue(new byte[] { 1 });
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < PrintJobQueue.MAX_QUEUED_JOBS + 1; i++) {
+            enqueue(new byte[] { 2 });
+        }
+        final long parked = PrintJobQueue.MAX_QUEUED_JOBS + 2;
+        await("the parked job to be stored", () -> new File(store, parked + ".job").exists());
+
+        // the app dies while the first job prints, the restarted one has its own executors
+        queue.shutdown();
+        crashed = executors;
+        executors = new DeviceExecutors();
+        queue = newQueue(false);
+        await("the parked job", () -> isCompleted(parked));
+        assertEquals(PrintJobQueue.STATUS_FAILED, queue.status(1).get("status"));
+    }
+
+    @Test
+    public void dropsTruncatedJobFiles() throws Exception {
+        try (FileOutputStream out = new FileOutputStream(new File(store, "4.job"))) {
+            out.write(new byte[] { 0, 17, 'x' });
+        }
+        writeJobFile("not-a-job.job", new byte[] { 1 });
+
+        queue = newQueue(false);
+        await("the store to be cleaned", () -> store.listFiles().length == 0);
+        assertEquals(0, queue.list().size());
+        assertEquals(0, printed.size());
+    }
+}
@@ -0,0 +1,130 @@
+package id.flutter.plugins;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class RasterCompactorTest {
+    private static final int WIDTH_BYTES = 48;
+
+    private static byte[] compact(byte[] bits, int height, int dpi) {
+        final byte[] out = new byte[RasterCompactor.maxSize(WIDTH_BYTES, height)];
+        return Arrays.copyOf(out, RasterCompactor.compact(bits, 0, WIDTH_BYTES, height, dpi, out, 0));
+    }
+
+    private static void ink(byte[] bits, int fromRow, int toRow, int value) {
+        for (int y = fromRow; y < toRow; y++) {
+            bits[y * WIDTH_BYTES] = (byte) value;
+        }
+    }
+
+    private static void strip(ByteArrayOutputStream expected, int widthBytes, int rows, int value) {
+        expected.write(0x1D);
+        expected.write('v');
+        expected.write('0');
+        expected.write(0);
+        expected.write(widthBytes);
+        expected.write(0);
+        expected.write(rows);
+        expected.write(0);
+        for (int y = 0; y < rows; y++) {
+            expected.write(value);
+            for (int x = 1; x < widthBytes; x++) {
+                expected.write(0);
+            }
+        }
+    }
+
+    private static ByteArrayOutputStream prologue(int dpi) {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(0x1B);
+        expected.write('a');
+        expected.write(0);
+        expected.write(0x1D);
+        expected.write('P');
+        expected.write(0);
+        expected.write(dpi);
+        return expected;
+    }
+
+    @Test
+    public void replacesBlankRowsWithFeedsInDots() {
+        final byte[] bits = new byte[WIDTH_BYTES * 40];
+        ink(bits, 0, 8, 0x81);
+        ink(bits, 32, 40, 0x42);
+
+        final ByteArrayOutputStream expected = prologue(180);
+        strip(expected, 1, 8, 0x81);
+        expected.write(0x1B);
+        expected.write('J');
+        expected.write(24);
+        strip(expected, 1, 8, 0x42);
+
+        assertArrayEquals(expected.toByteArray(), compact(bits, 40, 180));
+    }
+
+    @Test
+    public void splitsLongFeedsAndFeedsTrailingRows() {
+        final byte[] bits = new byte[WIDTH_BYTES * 600];
+        ink(bits, 0, 1, 0xFF);
+
+        final ByteArrayOutputStream expected = prologue(RasterCompactor.DEFAULT_DPI);
+        strip(expected, 1, 1, 0xFF);
+        for (int n : new int[] { 255, 255, 89 }) {
+            expected.write(0x1B);
+            expected.write('J');
+            expected.write(n);
+        }
+
+        assertArrayEquals(expected.toByteArray(), compact(bits, 600, RasterCompactor.DEFAULT_DPI));
+    }
+
+    @Test
+    public void keepsShortBlankRunsInsideStrips() {
+        final byte[] bits = new byte[WIDTH_BYTES * 6];
+        ink(bits, 0, 2, 0x01);
+        ink(bits, 4, 6, 0x01);
+
+        final ByteArrayOutputStream expected = prologue(RasterCompactor.DEFAULT_DPI);
+        expected.write(0x1D);
+        expected.write('v');
+        expected.write('0');
+        expected.write(0);
+        expected.write(1);
+        expected.write(0);
+        expected.write(6);
+        expected.write(0);
+        expected.write(new byte[] { 1, 1, 0, 0, 1, 1 }, 0, 6);
+
+        assertArrayEquals(expected.toByteArray(), compact(bits, 6, RasterCompactor.DEFAULT_DPI));
+    }
+
+    @Test
+    public void fallsBackToOnePlainBlockWhenCompactingDoesNotPay() {
+        final byte[] bits = new byte[WIDTH_BYTES * 30];
+        Arrays.fill(bits, (byte) 0x55);
+        final long fallbacks = (Long) RasterCompactor.stats().get("fallbacks");
+
+        final byte[] out = compact(bits, 30, RasterCompactor.DEFAULT_DPI);
+
+        final byte[] plain = new byte[RasterCompactor.maxSize(WIDTH_BYTES, 30)];
+        final int offset = EscPosRaster.writeHeader(EscPosRaster.MODE_RASTER, plain, 0, WIDTH_BYTES, 30);
+        System.arraycopy(bits, 0, plain, offset, bits.length);
+        assertArrayEquals(plain, out);
+        assertEquals(fallbacks + 1, RasterCompactor.stats().get("fallbacks"));
+    }
+
+    @Test
+    public void writesNothingForAnEmptyImage() {
+        assertEquals(0, compact(new byte[0], 0, RasterCompactor.DEFAULT_DPI).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDpiBeyondOneByte() {
+        compact(new byte[WIDTH_BYTES], 1, 300);
+    }
+}
@@ -0,0 +1,121 @@
+package id.flutter.plugins;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RasterPipelineTest {
+    /** Band {@code i} is {@code size} bytes of value {@code i}. */
+    private static class FakeSource implements RasterPipeline.BandSource {
+        final int bands;
+        final int size;
+        final CountDownLatch closed = new CountDownLatch(1);
+
+        FakeSource(int bands, int size) {
+            this.bands = bands;
+            this.size = size;
+        }
+
+        @Override
+        public int bandCount() {
+            return bands;
+        }
+
+        @Override
+        public int maxBandSize() {
+            return size;
+        }
+
+        @Override
+        public int totalSize() {
+            return bands * size;
+        }
+
+        @Override
+        public int encodeBand(int index, byte[] out) {
+            for (int i = 0; i < size; i++) {
+                out[i] = (byte) index;
+            }
+            return size;
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+
+    private final ExecutorService encoder = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        encoder.shutdownNow();
+    }
+
+    @Test
+    public void sendsEveryBandInOrderAndClosesTheSource() throws Exception {
+        final FakeSource source = new FakeSource(5, 3);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new RasterPipeline(encoder).print(source, new ChunkedWriter(out, 0, 0), null);
+
+        assertArrayEquals(new byte[] { 0, 0, 0, 1, 1, 1, 2, 2, 2, 3, 3, 3, 4, 4, 4 }, out.toByteArray());
+        assertTrue(source.closed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void closesTheSourceWhenTheWriteFails() throws Exception {
+        final FakeSource source = new FakeSource(5, 3);
+        final OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("broken pipe");
+            }
+        };
+
+        try {
+            new RasterPipeline(encoder).print(source, new ChunkedWriter(broken, 0, 0), null);
+            fail("wrote to a broken socket");
+        } catch (IOException expected) {
+        }
+        assertTrue(source.closed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void closesTheSourceWhenCancelledBeforeEncodingStarts() throws Exception {
+        // the only encoder thread is busy, the producer stays queued
+        final CountDownLatch busy = new CountDownLatch(1);
+        encoder.execute(() -> {
+            try {
+                busy.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+
+        final FakeSource source = new FakeSource(5, 3);
+        final Thread sender = new Thread(() -> {
+            try {
+                new RasterPipeline(encoder).print(source, new ChunkedWriter(new ByteArrayOutputStream(), 0, 0),
+                        null);
+            } catch (Exception ignored) {
+            }
+        });
+        sender.start();
+        sender.interrupt();
+        sender.join(5000);
+
+        assertTrue(source.closed.await(5, TimeUnit.SECONDS));
+        busy.countDown();
+    }
+}
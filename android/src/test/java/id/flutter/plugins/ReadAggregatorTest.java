@@ -0,0 +1,129 @@
+package id.flutter.plugins;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ReadAggregatorTest {
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final List<Long> delays = new ArrayList<>();
+    private final List<byte[]> delivered = new ArrayList<>();
+    private ReadAggregator aggregator;
+
+    @Before
+    public void setUp() {
+        // flushes only run when the test says so
+        aggregator = new ReadAggregator((task, delayMs) -> {
+            tasks.add(task);
+            delays.add(delayMs);
+        }, delivered::add);
+    }
+
+    private static byte[] range(int from, int to) {
+        final byte[] data = new byte[to - from];
+        for (int i = from; i < to; i++) {
+            data[i - from] = (byte) i;
+        }
+        return data;
+    }
+
+    private void offer(byte[] data) {
+        aggregator.offer(data, 0, data.length);
+    }
+
+    private void runAll() {
+        for (Runnable task : new ArrayList<>(tasks)) {
+            task.run();
+        }
+        tasks.clear();
+    }
+
+    @Test
+    public void deliversOneBufferPerWindow() {
+        offer(range(0, 3));
+        offer(range(3, 5));
+        offer(range(5, 6));
+
+        assertEquals(1, tasks.size());
+        assertEquals((long) ReadAggregator.DEFAULT_WINDOW_MS, (long) delays.get(0));
+
+        runAll();
+        assertEquals(1, delivered.size());
+        assertArrayEquals(range(0, 6), delivered.get(0));
+        assertEquals(1L, aggregator.stats().get("deliveries"));
+        assertEquals(6L, aggregator.stats().get("deliveredBytes"));
+    }
+
+    @Test
+    public void flushesRightAwayOnceWindowBytesAreBuffered() {
+        aggregator.configure(50, 8, 64, ReadAggregator.DROP_OLDEST);
+        offer(range(0, 4));
+        offer(range(4, 8));
+
+        assertEquals(2, tasks.size());
+        assertEquals(50L, (long) delays.get(0));
+        assertEquals(0L, (long) delays.get(1));
+
+        // the superseded window flush does nothing
+        tasks.get(0).run();
+        assertEquals(0, delivered.size());
+        tasks.get(1).run();
+        assertEquals(1, delivered.size());
+        assertArrayEquals(range(0, 8), delivered.get(0));
+    }
+
+    @Test
+    public void dropOldestKeepsTheLatestBytes() {
+        aggregator.configure(50, 4, 8, ReadAggregator.DROP_OLDEST);
+        offer(range(0, 4));
+        offer(range(4, 8));
+        offer(range(8, 12));
+
+        runAll();
+        assertArrayEquals(range(4, 12), delivered.get(0));
+        assertEquals(4L, aggregator.stats().get("droppedBytes"));
+    }
+
+    @Test
+    public void dropOldestKeepsTheTailOfAnOversizedRead() {
+        aggregator.configure(50, 4, 8, ReadAggregator.DROP_OLDEST);
+        offer(range(0, 2));
+        offer(range(2, 14));
+
+        runAll();
+        assertArrayEquals(range(6, 14), delivered.get(0));
+        assertEquals(6L, aggregator.stats().get("droppedBytes"));
+    }
+
+    @Test
+    public void dropNewestKeepsTheFirstBytes() {
+        aggregator.configure(50, 4, 8, ReadAggregator.DROP_NEWEST);
+        offer(range(0, 4));
+        offer(range(4, 8));
+        offer(range(8, 12));
+
+        runAll();
+        assertArrayEquals(range(0, 8), delivered.get(0));
+        assertEquals(4L, aggregator.stats().get("droppedBytes"));
+    }
+
+    @Test
+    public void shrinkingKeepsTheLatestPendingBytes() {
+        offer(range(0, 12));
+        aggregator.configure(50, 4, 8, ReadAggregator.DROP_NEWEST);
+
+        runAll();
+        assertArrayEquals(range(4, 12), delivered.get(0));
+        assertEquals(4L, aggregator.stats().get("droppedBytes"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownOverflowPolicy() {
+        aggregator.configure(16, 4096, 65536, "drop_random");
+    }
+}
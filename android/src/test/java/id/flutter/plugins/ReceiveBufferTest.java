@@ -0,0 +1,147 @@
+package id.flutter.plugins;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ReceiveBufferTest {
+    /** Hands out one chunk per read and reports the chunks still queued as available. */
+    private static class ChunkedInput extends InputStream {
+        private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+
+        ChunkedInput(byte[]... chunks) {
+            this.chunks.addAll(Arrays.asList(chunks));
+        }
+
+        @Override
+        public int read() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            final byte[] chunk = chunks.poll();
+            if (chunk == null) {
+                return -1;
+            }
+            final int count = Math.min(length, chunk.length);
+            System.arraycopy(chunk, 0, buffer, offset, count);
+            if (count < chunk.length) {
+                chunks.push(Arrays.copyOfRange(chunk, count, chunk.length));
+            }
+            return count;
+        }
+
+        @Override
+        public int available() {
+            int available = 0;
+            for (byte[] chunk : chunks) {
+                available += chunk.length;
+            }
+            return available;
+        }
+    }
+
+    private static class Frames implements ReceiveBuffer.Sink {
+        final List<byte[]> frames = new ArrayList<>();
+
+        @Override
+        public void onFrame(byte[] data, int length) {
+            frames.add(Arrays.copyOf(data, length));
+        }
+    }
+
+    private static long stat(String name) {
+        return (Long) ReceiveBuffer.stats().get(name);
+    }
+
+    @Test
+    public void deliversBurstOnce() throws IOException {
+        final ChunkedInput in = new ChunkedInput(new byte[] { 1, 2 }, new byte[] { 3 }, new byte[] { 4, 5 });
+        final Frames sink = new Frames();
+        final long reads = stat("reads");
+        final long frames = stat("frames");
+        final long bytes = stat("bytes");
+
+        final ReceiveBuffer buffer = ReceiveBuffer.obtain();
+        try {
+            for (int i = 0; i < 3; i++) {
+                buffer.read(in, sink);
+            }
+        } finally {
+            buffer.release();
+        }
+
+        assertEquals(1, sink.frames.size());
+        assertArrayEquals(new byte[] { 1, 2, 3, 4, 5 }, sink.frames.get(0));
+        assertEquals(reads + 3, stat("reads"));
+        assertEquals(frames + 1, stat("frames"));
+        assertEquals(bytes + 5, stat("bytes"));
+    }
+
+    @Test
+    public void deliversFullBufferWhileMoreIsAvailable() throws IOException {
+        final ChunkedInput in = new ChunkedInput(new byte[ReceiveBuffer.CAPACITY + 10]);
+        final Frames sink = new Frames();
+
+        final ReceiveBuffer buffer = ReceiveBuffer.obtain();
+        try {
+            buffer.read(in, sink);
+            assertEquals(1, sink.frames.size());
+            assertEquals(ReceiveBuffer.CAPACITY, sink.frames.get(0).length);
+
+            buffer.read(in, sink);
+            assertEquals(2, sink.frames.size());
+            assertEquals(10, sink.frames.get(1).length);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    public void reusesReleasedBuffers() {
+        // more than the pool holds, so it is full whatever earlier tests left in it
+        final List<ReceiveBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            buffers.add(ReceiveBuffer.obtain());
+        }
+        for (ReceiveBuffer buffer : buffers) {
+            buffer.release();
+        }
+        assertEquals(4, ReceiveBuffer.stats().get("pooledBuffers"));
+
+        final long allocations = stat("bufferAllocations");
+        final long reuses = stat("bufferReuses");
+        buffers.clear();
+        for (int i = 0; i < 4; i++) {
+            buffers.add(ReceiveBuffer.obtain());
+        }
+
+        assertEquals(allocations, stat("bufferAllocations"));
+        assertEquals(reuses + 4, stat("bufferReuses"));
+
+        buffers.add(ReceiveBuffer.obtain());
+        assertEquals(allocations + 1, stat("bufferAllocations"));
+        for (ReceiveBuffer buffer : buffers) {
+            buffer.release();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void throwsAtEndOfStream() throws IOException {
+        final ReceiveBuffer buffer = ReceiveBuffer.obtain();
+        try {
+            buffer.read(new ChunkedInput(), new Frames());
+        } finally {
+            buffer.release();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package id.flutter.plugins;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TcpTransportTest {
+    private ServerSocket server;
+    private Socket printer;
+    private TcpTransport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        transport = TcpTransport.connect(TcpTransport.SCHEME + "127.0.0.1:" + server.getLocalPort(), 5000);
+        printer = server.accept();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        transport.close();
+        printer.close();
+        server.close();
+    }
+
+    @Test
+    public void carriesBytesBothWays() throws IOException {
+        transport.getOutputStream().write(new byte[] { 0x10, 0x04, 1 });
+        final InputStream fromApp = printer.getInputStream();
+        assertEquals(0x10, fromApp.read());
+        assertEquals(0x04, fromApp.read());
+        assertEquals(1, fromApp.read());
+
+        printer.getOutputStream().write(0x12);
+        assertEquals(0x12, transport.getInputStream().read());
+    }
+
+    @Test
+    public void concurrentSingleByteWritesKeepEveryByte() throws Exception {
+        final int perThread = 20000;
+        final OutputStream out = transport.getOutputStream();
+        final Thread[] writers = new Thread[2];
+        for (int i = 0; i < writers.length; i++) {
+            final int value = 'a' + i;
+            writers[i] = new Thread(() -> {
+                try {
+                    for (int n = 0; n < perThread; n++) {
+                        out.write(value);
+                    }
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            });
+            writers[i].start();
+        }
+
+        final int[] counts = new int[2];
+        final InputStream fromApp = printer.getInputStream();
+        for (int n = 0; n < perThread * writers.length; n++) {
+            final int b = fromApp.read();
+            assertTrue("unexpected byte " + b, b == 'a' || b == 'b');
+            counts[b - 'a']++;
+        }
+        for (Thread writer : writers) {
+            writer.join(5000);
+        }
+
+        assertEquals(perThread, counts[0]);
+        assertEquals(perThread, counts[1]);
+    }
+}
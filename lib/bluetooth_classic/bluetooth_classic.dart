@@ -35,15 +35,61 @@ class BluetoothClassic {
     return BluetoothClassicPlatform.instance.onDeviceStatusChanged();
   }
 
+  Stream<Map<String, dynamic>> onPrinterReadiness() {
+    return BluetoothClassicPlatform.instance.onPrinterReadiness();
+  }
+
   Stream<Uint8List> onDeviceDataReceived() {
     return BluetoothClassicPlatform.instance.onDeviceDataReceived();
   }
 
-  Future<bool> connect(String address, String serviceUUID) {
-    return BluetoothClassicPlatform.instance.connect(address, serviceUUID);
+  Future<bool> connect(
+    String address,
+    String serviceUUID, {
+    Duration timeout = const Duration(seconds: 15),
+  }) {
+    return BluetoothClassicPlatform.instance
+        .connect(address, serviceUUID, timeout: timeout);
+  }
+
+  Future<bool> cancelConnect() {
+    return BluetoothClassicPlatform.instance.cancelConnect();
   }
 
   Future<bool> write(String message) {
     return BluetoothClassicPlatform.instance.write(message);
   }
+
+  Future<String> openSession(
+    String address,
+    String serviceUUID, {
+    Duration timeout = const Duration(seconds: 15),
+  }) {
+    return BluetoothClassicPlatform.instance
+        .openSession(address, serviceUUID, timeout: timeout);
+  }
+
+  Future<bool> cancelSession(String session) {
+    return BluetoothClassicPlatform.instance.cancelSession(session);
+  }
+
+  Future<bool> closeSession(String session) {
+    return BluetoothClassicPlatform.instance.closeSession(session);
+  }
+
+  Future<bool> writeSession(String session, Uint8List data) {
+    return BluetoothClassicPlatform.instance.writeSession(session, data);
+  }
+
+  Future<List<Map<String, dynamic>>> getSessions() {
+    return BluetoothClassicPlatform.instance.getSessions();
+  }
+
+  Stream<int> onSessionStatusChanged(String session) {
+    return BluetoothClassicPlatform.instance.onSessionStatusChanged(session);
+  }
+
+  Stream<Uint8List> onSessionDataReceived(String session) {
+    return BluetoothClassicPlatform.instance.onSessionDataReceived(session);
+  }
 }
@@ -20,6 +20,8 @@ class MethodChannelBluetoothClassic extends BluetoothClassicPlatform {
       const EventChannel("maseka.dev/flutter_bluetooth_printer/status");
   final deviceDataChannel =
       const EventChannel("maseka.dev/flutter_bluetooth_printer/read");
+  final sessionDataChannel =
+      const EventChannel("maseka.dev/flutter_bluetooth_printer/sessions/read");
 
   /// stream mapped to deviceDiscoveryChannel
   Stream<dynamic>? _deviceDiscoveryStream;
@@ -35,8 +37,19 @@ class MethodChannelBluetoothClassic extends BluetoothClassicPlatform {
 
   final StreamController<int> statusStream = StreamController();
 
+  final StreamController<Map<String, dynamic>> readinessStream =
+      StreamController.broadcast();
+
   final StreamController<Uint8List> dataReceivedStream = StreamController();
 
+  final StreamController<Map<String, dynamic>> sessionStatusStream =
+      StreamController.broadcast();
+
+  /// stream mapped to sessionDataChannel, shared by every session
+  Stream<Map<String, dynamic>>? _sessionDataStream;
+
+  int _nextSession = 0;
+
   void _onDeviceDiscovered(Device device) {
     discoveryStream.add(device);
   }
@@ -45,6 +58,25 @@ class MethodChannelBluetoothClassic extends BluetoothClassicPlatform {
     statusStream.add(status);
   }
 
+  /// the status channel carries connection states as ints, printer readiness
+  /// and session states as maps, it is listened to once and split here
+  void _listenStatus() {
+    if (_deviceStatusStream != null) {
+      return;
+    }
+
+    _deviceStatusStream = deviceStatusChannel.receiveBroadcastStream();
+    _deviceStatusStream!.listen((event) {
+      if (event is int) {
+        _onDeviceStatus(event);
+      } else if (event is Map && event.containsKey('session')) {
+        sessionStatusStream.add(Map<String, dynamic>.from(event));
+      } else if (event is Map) {
+        readinessStream.add(Map<String, dynamic>.from(event));
+      }
+    });
+  }
+
   void _onDeviceDataReceived(Uint8List data) {
     dataReceivedStream.add(data);
   }
@@ -93,15 +125,26 @@ class MethodChannelBluetoothClassic extends BluetoothClassicPlatform {
   }
 
   @override
-  Future<bool> connect(String address, String serviceUUID) async {
+  Future<bool> connect(
+    String address,
+    String serviceUUID, {
+    Duration timeout = const Duration(seconds: 15),
+  }) async {
     var res =
-        await methodChannel.invokeMethod<bool>("connectKotlin", <String, String>{
+        await methodChannel.invokeMethod<bool>("connectKotlin", <String, dynamic>{
       "deviceId": address,
       "serviceUUID": serviceUUID,
+      "timeout": timeout.inMilliseconds,
     });
     return res!;
   }
 
+  @override
+  Future<bool> cancelConnect() async {
+    var res = await methodChannel.invokeMethod<bool>("cancelConnectKotlin");
+    return res!;
+  }
+
   @override
   Future<bool> disconnect() async {
     var res = await methodChannel.invokeMethod<bool>("disconnectKotlin");
@@ -110,13 +153,16 @@ class MethodChannelBluetoothClassic extends BluetoothClassicPlatform {
 
   @override
   Stream<int> onDeviceStatusChanged() {
-    _deviceStatusStream = deviceStatusChannel.receiveBroadcastStream();
-    _deviceStatusStream!.listen((event) {
-      _onDeviceStatus(event);
-    });
+    _listenStatus();
     return statusStream.stream;
   }
 
+  @override
+  Stream<Map<String, dynamic>> onPrinterReadiness() {
+    _listenStatus();
+    return readinessStream.stream;
+  }
+
   @override
   Stream<Uint8List> onDeviceDataReceived() {
     _deviceDataReceivedStream = deviceDataChannel.receiveBroadcastStream();
@@ -132,4 +178,65 @@ class MethodChannelBluetoothClassic extends BluetoothClassicPlatform {
         .invokeMethod<bool>("writeKotlin", <String, String>{"message": message});
     return res!;
   }
+
+  @override
+  Future<String> openSession(
+    String address,
+    String serviceUUID, {
+    Duration timeout = const Duration(seconds: 15),
+  }) async {
+    final session = 'session-${_nextSession++}';
+    await methodChannel.invokeMethod<bool>("openSessionKotlin", <String, dynamic>{
+      "session": session,
+      "deviceId": address,
+      "serviceUUID": serviceUUID,
+      "timeout": timeout.inMilliseconds,
+    });
+    return session;
+  }
+
+  @override
+  Future<bool> cancelSession(String session) async {
+    var res = await methodChannel.invokeMethod<bool>(
+        "cancelSessionKotlin", <String, dynamic>{"session": session});
+    return res!;
+  }
+
+  @override
+  Future<bool> closeSession(String session) async {
+    var res = await methodChannel.invokeMethod<bool>(
+        "closeSessionKotlin", <String, dynamic>{"session": session});
+    return res!;
+  }
+
+  @override
+  Future<bool> writeSession(String session, Uint8List data) async {
+    var res = await methodChannel.invokeMethod<bool>("writeSessionKotlin",
+        <String, dynamic>{"session": session, "data": data});
+    return res!;
+  }
+
+  @override
+  Future<List<Map<String, dynamic>>> getSessions() async {
+    var res = await methodChannel.invokeListMethod("getSessionsKotlin");
+    return res!.map((e) => Map<String, dynamic>.from(e)).toList();
+  }
+
+  @override
+  Stream<int> onSessionStatusChanged(String session) {
+    _listenStatus();
+    return sessionStatusStream.stream
+        .where((event) => event['session'] == session)
+        .map((event) => event['status'] as int);
+  }
+
+  @override
+  Stream<Uint8List> onSessionDataReceived(String session) {
+    _sessionDataStream ??= sessionDataChannel
+        .receiveBroadcastStream()
+        .map((event) => Map<String, dynamic>.from(event));
+    return _sessionDataStream!
+        .where((event) => event['session'] == session)
+        .map((event) => event['data'] as Uint8List);
+  }
 }
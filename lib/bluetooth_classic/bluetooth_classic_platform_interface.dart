@@ -54,15 +54,33 @@ abstract class BluetoothClassicPlatform extends PlatformInterface {
     throw UnimplementedError('onDeviceStatus() has not been implemented.');
   }
 
+  /// readiness events of the preferred printers kept warm natively, they
+  /// share the status channel with [onDeviceStatusChanged]
+  Stream<Map<String, dynamic>> onPrinterReadiness() {
+    throw UnimplementedError('onPrinterReadiness() has not been implemented.');
+  }
+
   Stream<Uint8List> onDeviceDataReceived() {
     throw UnimplementedError(
         'onDeviceDataReceived() has not been implemented.');
   }
 
-  Future<bool> connect(String address, String serviceUUID) {
+  /// connects on a background thread, failing with `connect_timeout` when the
+  /// device has not answered within [timeout]; a later connect, [disconnect]
+  /// or [cancelConnect] aborts it with `connect_cancelled`
+  Future<bool> connect(
+    String address,
+    String serviceUUID, {
+    Duration timeout = const Duration(seconds: 15),
+  }) {
     throw UnimplementedError('connect() has not been implemented.');
   }
 
+  /// aborts the connect in progress, true when there was one
+  Future<bool> cancelConnect() {
+    throw UnimplementedError('cancelConnect() has not been implemented.');
+  }
+
   Future<bool> disconnect() {
     throw UnimplementedError('disconnect() has not been implemented.');
   }
@@ -70,4 +88,45 @@ abstract class BluetoothClassicPlatform extends PlatformInterface {
   Future<bool> write(String message) {
     throw UnimplementedError('write() has not been implemented.');
   }
+
+  /// opens a streaming connection alongside the one of [connect], any number
+  /// of devices up to a native limit each under its own session id; fails like
+  /// [connect], or with `session_limit` when all sessions are in use
+  Future<String> openSession(
+    String address,
+    String serviceUUID, {
+    Duration timeout = const Duration(seconds: 15),
+  }) {
+    throw UnimplementedError('openSession() has not been implemented.');
+  }
+
+  /// aborts the session's connect in progress, true when there was one
+  Future<bool> cancelSession(String session) {
+    throw UnimplementedError('cancelSession() has not been implemented.');
+  }
+
+  Future<bool> closeSession(String session) {
+    throw UnimplementedError('closeSession() has not been implemented.');
+  }
+
+  /// writes are sent in order, after the session's earlier writes
+  Future<bool> writeSession(String session, Uint8List data) {
+    throw UnimplementedError('writeSession() has not been implemented.');
+  }
+
+  /// the open sessions with their `address` and `status`
+  Future<List<Map<String, dynamic>>> getSessions() {
+    throw UnimplementedError('getSessions() has not been implemented.');
+  }
+
+  Stream<int> onSessionStatusChanged(String session) {
+    throw UnimplementedError(
+        'onSessionStatusChanged() has not been implemented.');
+  }
+
+  /// bytes read by the session, batched like [onDeviceDataReceived]
+  Stream<Uint8List> onSessionDataReceived(String session) {
+    throw UnimplementedError(
+        'onSessionDataReceived() has not been implemented.');
+  }
 }
@@ -24,6 +24,7 @@ import 'bluetooth_classic/models/device.dart';
 part 'flutter_printer/src/capabilities.dart';
 part 'flutter_printer/src/commands.dart';
 part 'flutter_printer/src/errors/busy_device_exception.dart';
+part 'flutter_printer/src/errors/missing_fragment_exception.dart';
 part 'flutter_printer/src/esc_commands.dart';
 part 'flutter_printer/src/flutter_bluetooth_printer_impl.dart';
 part 'flutter_printer/src/generator.dart';
@@ -21,6 +21,93 @@ enum BluetoothState {
 
 abstract class DiscoveryState {}
 
+enum PrintJobState {
+  queued,
+  printing,
+  completed,
+  failed,
+}
+
+/// how the native side opens the RFCOMM socket
+enum ConnectStrategy {
+  /// last strategy that worked, then secure, insecure and channel1 in order
+  auto,
+
+  /// keeps the existing bond
+  secure,
+  insecure,
+
+  /// reflective channel 1 socket for printers with a broken SDP record
+  channel1,
+
+  /// removes the bond before connecting
+  unpair,
+}
+
+/// what the native side drops when the read stream falls behind
+enum ReadOverflow {
+  dropOldest,
+  dropNewest,
+}
+
+/// how grey levels become black and white dots
+enum DitherAlgorithm {
+  /// black below 50% luminance, best for text and line art
+  threshold,
+
+  /// error diffusion, the most faithful for photos
+  floydSteinberg,
+
+  /// lighter error diffusion, keeps highlights and shadows clean
+  atkinson,
+
+  /// 8x8 Bayer pattern, stable and fast
+  ordered,
+}
+
+class ImageDither {
+  final DitherAlgorithm algorithm;
+
+  /// applied to the luminance first, above 1 darkens the midtones
+  final double gamma;
+
+  /// applied after [gamma] around the middle grey
+  final double contrast;
+
+  const ImageDither({
+    this.algorithm = DitherAlgorithm.threshold,
+    this.gamma = 1.0,
+    this.contrast = 1.0,
+  });
+
+  Map<String, dynamic> _toMap() {
+    return {
+      'dither': const {
+        DitherAlgorithm.threshold: 'threshold',
+        DitherAlgorithm.floydSteinberg: 'floyd_steinberg',
+        DitherAlgorithm.atkinson: 'atkinson',
+        DitherAlgorithm.ordered: 'ordered',
+      }[algorithm],
+      'gamma': gamma,
+      'contrast': contrast,
+    };
+  }
+}
+
+class PrintJobStatus {
+  final int id;
+  final String address;
+  final PrintJobState state;
+  final String? error;
+
+  PrintJobStatus({
+    required this.id,
+    required this.address,
+    required this.state,
+    this.error,
+  });
+}
+
 abstract class FlutterBluetoothPrinterPlatform extends PlatformInterface {
   static final Object _token = Object();
   static late FlutterBluetoothPrinterPlatform _instance;
@@ -38,31 +125,268 @@ abstract class FlutterBluetoothPrinterPlatform extends PlatformInterface {
 
   Stream<DiscoveryState> get discovery;
 
+  /// with [pipelined] the printer's status is polled while [data] is being
+  /// sent; sending pauses while it reports paper out or the cover open and
+  /// resumes on its own, see [printerStatus]
   Future<bool> write({
     required String address,
     required Uint8List data,
     bool keepConnected = false,
     required int maxBufferSize,
     required int delayTime,
+    bool pipelined = false,
     ProgressCallback? onProgress,
   });
 
-  Future<bool> connect(String address);
+  /// writes the same [data] to all [addresses] in parallel, the call takes as
+  /// long as the slowest printer
+  Future<MultiWriteResult> writeMulti({
+    required List<String> addresses,
+    required Uint8List data,
+    bool keepConnected = false,
+    required int maxBufferSize,
+    required int delayTime,
+  });
+
+  /// pause and resume of pipelined writes
+  Stream<PrinterStatusEvent> get printerStatus;
+
+  /// queues [data] natively and completes with the job id once the job has
+  /// been accepted, waiting for a free slot while the printer's queue is full
+  Future<int> enqueueJob({
+    required String address,
+    required Uint8List data,
+    required int maxBufferSize,
+    required int delayTime,
+  });
+
+  Future<PrintJobStatus?> jobStatus(int id);
+
+  /// the jobs still known natively, oldest first; a job that was printing
+  /// when the app died is restored as failed rather than printed again, and
+  /// is reported again after every restart until it is acknowledged
+  Future<List<PrintJobStatus>> jobs();
+
+  /// forgets a completed or failed job, false if it is unknown or unfinished
+  Future<bool> acknowledgeJob(int id);
+
+  /// decodes a PNG/JPEG image natively and returns the finished `GS v 0`
+  /// command, [useImageRaster] is kept for compatibility and, as with the
+  /// Dart encoder, does not change the output; [useGraphics] opts into
+  /// `GS ( L` / `GS 8 L`, which many low-cost printers ignore; with [cropRaster]
+  /// the raster is cut into strips without their trailing white and blank
+  /// rows become paper feeds, which also resets the justification to left and
+  /// sets the vertical motion unit to one dot of [dpi] with `GS P`. The strips
+  /// are plain `GS v 0`, this is not run-length or vendor compressed raster
+  Future<Uint8List> encodeImage({
+    required Uint8List bytes,
+    required int dotsPerLine,
+    bool useImageRaster = true,
+    bool useGraphics = false,
+    bool cropRaster = false,
+    int dpi = 203,
+    ImageDither dither = const ImageDither(),
+  });
+
+  /// rasterizes [imageBytes] natively in bands of [bandHeight] rows, sending
+  /// every band while the next one is being encoded; [pipelined] polls the
+  /// printer's status like [write]; [cropRaster] falls back to `GS v 0` unless
+  /// [setPrinterCapabilities] declared the printer with cropRaster
+  Future<bool> printImage({
+    required String address,
+    required Uint8List imageBytes,
+    required int dotsPerLine,
+    bool useImageRaster = true,
+    bool useGraphics = false,
+    bool cropRaster = false,
+    int dpi = 203,
+    ImageDither dither = const ImageDither(),
+    int bandHeight = 256,
+    bool keepConnected = false,
+    required int maxBufferSize,
+    required int delayTime,
+    bool pipelined = false,
+    ProgressCallback? onProgress,
+  });
+
+  /// caches [bytes] natively under [id]; `{{name}}` placeholders in a
+  /// [template] are filled in by [compileFragments]
+  Future<bool> registerFragment(
+    String id,
+    Uint8List bytes, {
+    bool template = true,
+  });
+
+  /// encodes an image like [encodeImage] and caches the command under [id],
+  /// completes with its size in bytes
+  Future<int> registerImageFragment(
+    String id, {
+    required Uint8List imageBytes,
+    required int dotsPerLine,
+    bool useImageRaster = true,
+    bool useGraphics = false,
+    bool cropRaster = false,
+    int dpi = 203,
+    ImageDither dither = const ImageDither(),
+  });
+
+  Future<bool> removeFragment(String id);
+
+  /// fragments are evicted least recently used first beyond [budgetBytes]
+  Future<bool> setFragmentCacheBudget(int budgetBytes);
+
+  /// count, size, hit/miss and eviction counters of the fragment cache
+  Future<Map<String, dynamic>> getFragmentCacheStats();
+
+  /// joins [parts] natively, [variables] are `String` (encoded with
+  /// [charset]) or `Uint8List`; throws [MissingFragmentException]
+  Future<Uint8List> compileFragments(
+    List<ReceiptPart> parts, {
+    Map<String, Object> variables = const {},
+    String charset = 'ISO-8859-1',
+  });
+
+  /// same as [compileFragments] but prints the result, the job never
+  /// crosses the channel
+  Future<bool> printFragments({
+    required String address,
+    required List<ReceiptPart> parts,
+    Map<String, Object> variables = const {},
+    String charset = 'ISO-8859-1',
+    bool keepConnected = false,
+    required int maxBufferSize,
+    required int delayTime,
+  });
+
+  /// uploads an image once into the printer's NV memory (or volatile
+  /// download memory when [nonVolatile] is false) under the two character
+  /// [key]; skipped when the local index says the same image is already
+  /// stored, unless [force] is set
+  Future<StoredGraphic> storeGraphic({
+    required String address,
+    required String key,
+    required Uint8List imageBytes,
+    required int dotsPerLine,
+    bool nonVolatile = true,
+    ImageDither dither = const ImageDither(),
+    bool force = false,
+    bool keepConnected = false,
+    required int maxBufferSize,
+    required int delayTime,
+  });
+
+  /// graphics the local index believes are stored on [address]
+  Future<List<Map<String, dynamic>>> getStoredGraphics(String address);
+
+  /// clears the local index of [address], the next [storeGraphic] uploads
+  /// again
+  Future<bool> forgetStoredGraphics(String address);
+
+  /// declares what [address] understands beyond plain `GS v 0`, persisted
+  /// natively; [printImage] only sends compact output to printers declared
+  /// with [cropRaster], every other printer gets `GS v 0`
+  Future<bool> setPrinterCapabilities(
+    String address, {
+    bool cropRaster = false,
+  });
+
+  Future<Map<String, dynamic>> getPrinterCapabilities(String address);
+
+  /// devices seen in the last two minutes, straight from the native cache;
+  /// paired devices count as seen whenever discovery starts
+  Future<List<BluetoothDevice>> getDiscoveredDevices();
+
+  /// connects using [strategy] for this and later connects to [address];
+  /// without one the last strategy that worked is tried first. Network
+  /// printers are addressed as `tcp://host:port` and ignore [strategy]
+  Future<bool> connect(String address, {ConnectStrategy? strategy});
+
+  /// printers connected in the background at startup, when bluetooth turns
+  /// on, when the app resumes and after a failed job; persisted natively.
+  /// Jobs without keepConnected leave them connected, [disconnect] closes
+  /// them until the next of those triggers
+  Future<bool> setPreferredPrinters(List<String> addresses);
+
+  Future<List<String>> getPreferredPrinters();
+
+  /// strategy remembered for [address] and the latency of every attempt
+  /// made by its last connect
+  Future<Map<String, dynamic>> getConnectAttempts(String address);
+
   Future<bool> disconnect(String address);
   Future<BluetoothState> checkState();
+
+  /// sends `DLE EOT [type]` over the open connection and completes with the
+  /// status byte, or null when the printer did not answer within [timeout]
+  Future<int?> readStatus(
+    String address, {
+    int type = 1,
+    Duration timeout = const Duration(seconds: 2),
+  });
+
+  /// per printer queue depth and thread usage of the native I/O executor
+  Future<Map<String, dynamic>> getExecutorMetrics();
+
+  /// size, hit/miss, reconnect and eviction counters of the native
+  /// connection pool
+  Future<Map<String, dynamic>> getConnectionPoolStats();
+
+  /// queue, connect and write time of the last print jobs, and p50/p95/p99
+  /// of each printer over its last 256 jobs
+  Future<Map<String, dynamic>> getMetrics();
+
+  /// clears the figures returned by [getMetrics]
+  Future<bool> resetMetrics();
+
+  /// one event per finished print job, the same maps as in
+  /// `getMetrics()['recent']`
+  Stream<Map<String, dynamic>> get jobMetrics;
+
+  /// bytes a plain `GS v 0` block would have taken against what the compact
+  /// raster mode sent, and the blank rows replaced by paper feeds
+  Future<Map<String, dynamic>> getRasterStats();
+
+  /// read, frame and buffer allocation counters of the native receive path
+  Future<Map<String, dynamic>> getReceiveStats();
+
+  /// inbound bytes are delivered as one event per [window], or as soon as
+  /// [windowBytes] are buffered; at most [maxPendingBytes] wait for delivery
+  Future<bool> configureReadChannel({
+    Duration window = const Duration(milliseconds: 16),
+    int windowBytes = 4096,
+    int maxPendingBytes = 65536,
+    ReadOverflow overflow = ReadOverflow.dropOldest,
+  });
 }
 
 class BluetoothDevice extends DiscoveryState {
   final String address;
   final String? name;
   final int? type;
+  final int? rssi;
+  final DateTime? lastSeen;
 
   BluetoothDevice({
     required this.address,
     this.name,
     this.type,
+    this.rssi,
+    this.lastSeen,
   });
 
+  factory BluetoothDevice.fromMap(Map data) {
+    final lastSeen = data['lastSeen'];
+    return BluetoothDevice(
+      address: data['address'],
+      name: data['name'],
+      type: data['type'],
+      rssi: data['rssi'],
+      lastSeen: lastSeen is int
+          ? DateTime.fromMillisecondsSinceEpoch(lastSeen)
+          : null,
+    );
+  }
+
   @override
   bool operator ==(Object other) =>
       identical(this, other) ||
@@ -71,3 +395,133 @@ class BluetoothDevice extends DiscoveryState {
   @override
   int get hashCode => address.hashCode;
 }
+
+/// new or changed devices reported by one discovery batch
+class BluetoothDeviceBatch extends DiscoveryState {
+  final List<BluetoothDevice> devices;
+  BluetoothDeviceBatch({required this.devices});
+}
+
+/// outcome of a background connect to a preferred printer
+class PrinterReadiness {
+  final String address;
+  final bool ready;
+
+  /// attach, adapter_on, adapter_off, resume or configure
+  final String trigger;
+  final Duration latency;
+  final String? error;
+
+  PrinterReadiness({
+    required this.address,
+    required this.ready,
+    required this.trigger,
+    required this.latency,
+    this.error,
+  });
+
+  factory PrinterReadiness.fromMap(Map data) {
+    return PrinterReadiness(
+      address: data['address'],
+      ready: data['ready'] == true,
+      trigger: data['trigger'] ?? '',
+      latency: Duration(milliseconds: data['latencyMs'] ?? 0),
+      error: data['error'],
+    );
+  }
+}
+
+/// reported when a pipelined write pauses or resumes
+class PrinterStatusEvent {
+  final String address;
+  final bool paused;
+
+  /// cover_open, paper_out or error while paused
+  final String? reason;
+
+  /// raw `DLE EOT 2` status byte
+  final int status;
+
+  PrinterStatusEvent({
+    required this.address,
+    required this.paused,
+    required this.status,
+    this.reason,
+  });
+
+  factory PrinterStatusEvent.fromMap(Map data) {
+    return PrinterStatusEvent(
+      address: data['address'],
+      paused: data['paused'] == true,
+      reason: data['reason'],
+      status: data['status'] ?? 0,
+    );
+  }
+}
+
+class PrinterWriteResult {
+  final bool success;
+  final String? error;
+
+  /// time spent waiting for the printer's previous work
+  final Duration queued;
+  final Duration write;
+
+  PrinterWriteResult({
+    required this.success,
+    required this.queued,
+    required this.write,
+    this.error,
+  });
+
+  factory PrinterWriteResult.fromMap(Map data) {
+    return PrinterWriteResult(
+      success: data['success'] == true,
+      error: data['error'],
+      queued: Duration(milliseconds: data['queuedMs'] ?? 0),
+      write: Duration(milliseconds: data['writeMs'] ?? 0),
+    );
+  }
+}
+
+class StoredGraphic {
+  /// false when the upload was skipped because the image was already stored
+  final bool uploaded;
+
+  /// size of the upload, 0 when skipped
+  final int bytes;
+
+  /// prints the stored graphic, put this in the ticket instead of the image
+  final Uint8List command;
+
+  StoredGraphic({
+    required this.uploaded,
+    required this.bytes,
+    required this.command,
+  });
+}
+
+/// a piece of a receipt, either a cached fragment or literal bytes
+class ReceiptPart {
+  final String? fragmentId;
+  final Uint8List? bytes;
+
+  const ReceiptPart.fragment(String id)
+      : fragmentId = id,
+        bytes = null;
+
+  const ReceiptPart.bytes(Uint8List data)
+      : fragmentId = null,
+        bytes = data;
+
+  Object get _encoded => fragmentId ?? bytes!;
+}
+
+class MultiWriteResult {
+  final Map<String, PrinterWriteResult> printers;
+  final Duration total;
+
+  MultiWriteResult({required this.printers, required this.total});
+
+  bool get success => printers.values.every((e) => e.success);
+}
@@ -0,0 +1,12 @@
+part of flutter_bluetooth_printer;
+
+/// the native fragment cache does not hold [id], it was never registered or
+/// has been evicted; register it again and retry
+class MissingFragmentException implements Exception {
+  final String id;
+
+  MissingFragmentException(this.id);
+
+  @override
+  String toString() => 'MissingFragmentException: fragment not cached: $id';
+}
@@ -22,12 +22,18 @@ enum PaperSize {
 
 class FlutterBluetoothPrinter {
   static Stream<DiscoveryState> _discovery() async* {
-    final result = <BluetoothDevice>[];
+    // keyed by address so changed entries replace the old ones
+    final result = <String, BluetoothDevice>{};
     await for (final state
         in FlutterBluetoothPrinterPlatform.instance.discovery) {
       if (state is BluetoothDevice) {
-        result.add(state);
-        yield DiscoveryResult(devices: result.toSet().toList());
+        result[state.address] = state;
+        yield DiscoveryResult(devices: result.values.toList());
+      } else if (state is BluetoothDeviceBatch) {
+        for (final device in state.devices) {
+          result[device.address] = device;
+        }
+        yield DiscoveryResult(devices: result.values.toList());
       } else {
         result.clear();
         yield state;
@@ -46,8 +52,16 @@ class FlutterBluetoothPrinter {
 
     /// if true, you should manually disconnect the printer after finished
     required bool keepConnected,
+
+    /// [data] is sent in slices of [maxBufferSize] bytes as fast as the link
+    /// accepts them; a positive [delayTime] makes each slice take at least
+    /// that many milliseconds, for printers that overflow their input buffer
     int maxBufferSize = 512,
-    int delayTime = 120,
+    int delayTime = 0,
+
+    /// polls the printer while sending and waits out paper out / cover open
+    /// instead of losing the ticket
+    bool pipelined = false,
     ProgressCallback? onProgress,
   }) {
     return FlutterBluetoothPrinterPlatform.instance.write(
@@ -57,9 +71,56 @@ class FlutterBluetoothPrinter {
       keepConnected: keepConnected,
       maxBufferSize: maxBufferSize,
       delayTime: delayTime,
+      pipelined: pipelined,
+    );
+  }
+
+  /// prints one ticket on several printers at once, e.g. kitchen stations
+  static Future<MultiWriteResult> printBytesMulti({
+    required List<String> addresses,
+    required Uint8List data,
+    bool keepConnected = false,
+    int maxBufferSize = 512,
+    int delayTime = 0,
+  }) {
+    return FlutterBluetoothPrinterPlatform.instance.writeMulti(
+      addresses: addresses,
+      data: data,
+      keepConnected: keepConnected,
+      maxBufferSize: maxBufferSize,
+      delayTime: delayTime,
+    );
+  }
+
+  static Stream<PrinterStatusEvent> get printerStatus =>
+      FlutterBluetoothPrinterPlatform.instance.printerStatus;
+
+  static Future<int> enqueueJob({
+    required String address,
+    required Uint8List data,
+    int maxBufferSize = 512,
+    int delayTime = 0,
+  }) {
+    return FlutterBluetoothPrinterPlatform.instance.enqueueJob(
+      address: address,
+      data: data,
+      maxBufferSize: maxBufferSize,
+      delayTime: delayTime,
     );
   }
 
+  static Future<PrintJobStatus?> jobStatus(int id) {
+    return FlutterBluetoothPrinterPlatform.instance.jobStatus(id);
+  }
+
+  static Future<List<PrintJobStatus>> jobs() {
+    return FlutterBluetoothPrinterPlatform.instance.jobs();
+  }
+
+  static Future<bool> acknowledgeJob(int id) {
+    return FlutterBluetoothPrinterPlatform.instance.acknowledgeJob(id);
+  }
+
   static double calculatePrintingDurationInMilliseconds(
     int heightInDots,
     double printSpeed,
@@ -91,18 +152,26 @@ class FlutterBluetoothPrinter {
     ProgressCallback? onProgress,
     int addFeeds = 0,
     bool useImageRaster = true,
+    bool useGraphics = false,
+    bool cropRaster = false,
+    int dpi = 203,
+    ImageDither dither = const ImageDither(),
     required bool keepConnected,
     int maxBufferSize = 512,
-    int delayTime = 120,
+    int delayTime = 0,
   }) async {
     try {
       final generator = Generator();
       final reset = generator.reset();
 
-      final imageData = await generator.encode(
+      final imageData = await encodeImage(
         bytes: imageBytes,
         dotsPerLine: paperSize.width,
         useImageRaster: useImageRaster,
+        useGraphics: useGraphics,
+        cropRaster: cropRaster,
+        dpi: dpi,
+        dither: dither,
       );
 
       await _initialize(
@@ -120,14 +189,17 @@ class FlutterBluetoothPrinter {
               for (int i = 0; i < addFeeds; i++) ...Commands.lineFeed,
             ];
 
+      final payload = BytesBuilder(copy: false)
+        ..add(imageData)
+        ..add(reset)
+        ..add(additional);
+
+      // without keepConnected the socket is released natively, a preferred
+      // printer stays connected
       final printResult = await printBytes(
-        keepConnected: true,
+        keepConnected: keepConnected,
         address: address,
-        data: Uint8List.fromList([
-          ...imageData,
-          ...reset,
-          ...additional,
-        ]),
+        data: payload.takeBytes(),
         onProgress: onProgress,
         maxBufferSize: maxBufferSize,
         delayTime: delayTime,
@@ -136,10 +208,83 @@ class FlutterBluetoothPrinter {
       return printResult;
     } catch (e) {
       return false;
-    } finally {
-      if (!keepConnected) {
-        await disconnect(address);
-      }
+    }
+  }
+
+  /// encodes natively where the platform supports it, otherwise falls back to
+  /// [Generator.encode]
+  static Future<List<int>> encodeImage({
+    required Uint8List bytes,
+    required int dotsPerLine,
+    bool useImageRaster = true,
+    bool useGraphics = false,
+    bool cropRaster = false,
+    int dpi = 203,
+    ImageDither dither = const ImageDither(),
+  }) async {
+    try {
+      return await FlutterBluetoothPrinterPlatform.instance.encodeImage(
+        bytes: bytes,
+        dotsPerLine: dotsPerLine,
+        useImageRaster: useImageRaster,
+        useGraphics: useGraphics,
+        cropRaster: cropRaster,
+        dpi: dpi,
+        dither: dither,
+      );
+    } on MissingPluginException {
+      return Generator().encode(
+        bytes: bytes,
+        dotsPerLine: dotsPerLine,
+        useImageRaster: useImageRaster,
+      );
+    }
+  }
+
+  /// like [printImageSingle], but the image is rasterized natively in bands of
+  /// [bandHeight] rows and every band is sent while the next one is encoded,
+  /// so long receipts start printing almost immediately
+  static Future<bool> printImageStreamed({
+    required String address,
+    required Uint8List imageBytes,
+    PaperSize paperSize = PaperSize.mm58,
+    ProgressCallback? onProgress,
+    bool useImageRaster = true,
+    bool useGraphics = false,
+    bool cropRaster = false,
+    int dpi = 203,
+    ImageDither dither = const ImageDither(),
+    int bandHeight = 256,
+    required bool keepConnected,
+    int maxBufferSize = 512,
+    int delayTime = 0,
+
+    /// polls the printer while sending, see [printBytes]
+    bool pipelined = false,
+  }) async {
+    try {
+      await _initialize(
+        address: address,
+      );
+
+      return await FlutterBluetoothPrinterPlatform.instance.printImage(
+        address: address,
+        imageBytes: imageBytes,
+        dotsPerLine: paperSize.width,
+        useImageRaster: useImageRaster,
+        useGraphics: useGraphics,
+        cropRaster: cropRaster,
+        dpi: dpi,
+        dither: dither,
+        bandHeight: bandHeight,
+        keepConnected: keepConnected,
+        maxBufferSize: maxBufferSize,
+        delayTime: delayTime,
+        pipelined: pipelined,
+        onProgress: onProgress,
+      );
+    } catch (e) {
+      return false;
     }
   }
 
@@ -175,11 +320,228 @@ class FlutterBluetoothPrinter {
     return FlutterBluetoothPrinterPlatform.instance.disconnect(address);
   }
 
-  static Future<bool> connect(String address) async {
-    return FlutterBluetoothPrinterPlatform.instance.connect(address);
+  static Future<List<BluetoothDevice>> getDiscoveredDevices() async {
+    return FlutterBluetoothPrinterPlatform.instance.getDiscoveredDevices();
+  }
+
+  static Future<bool> connect(
+    String address, {
+    ConnectStrategy? strategy,
+  }) async {
+    return FlutterBluetoothPrinterPlatform.instance.connect(
+      address,
+      strategy: strategy,
+    );
+  }
+
+  static Future<bool> setPreferredPrinters(List<String> addresses) async {
+    return FlutterBluetoothPrinterPlatform.instance
+        .setPreferredPrinters(addresses);
+  }
+
+  static Future<List<String>> getPreferredPrinters() async {
+    return FlutterBluetoothPrinterPlatform.instance.getPreferredPrinters();
+  }
+
+  /// readiness of the preferred printers, reported on the status channel
+  static Stream<PrinterReadiness> get readiness =>
+      BluetoothClassicPlatform.instance
+          .onPrinterReadiness()
+          .map(PrinterReadiness.fromMap);
+
+  static Future<Map<String, dynamic>> getConnectAttempts(String address) async {
+    return FlutterBluetoothPrinterPlatform.instance.getConnectAttempts(address);
   }
 
   static Future<BluetoothState> getState() async {
     return FlutterBluetoothPrinterPlatform.instance.checkState();
   }
+
+  static Future<int?> readStatus(
+    String address, {
+    int type = 1,
+    Duration timeout = const Duration(seconds: 2),
+  }) async {
+    return FlutterBluetoothPrinterPlatform.instance.readStatus(
+      address,
+      type: type,
+      timeout: timeout,
+    );
+  }
+
+  static Future<Map<String, dynamic>> getExecutorMetrics() async {
+    return FlutterBluetoothPrinterPlatform.instance.getExecutorMetrics();
+  }
+
+  static Future<Map<String, dynamic>> getConnectionPoolStats() async {
+    return FlutterBluetoothPrinterPlatform.instance.getConnectionPoolStats();
+  }
+
+  /// uploads a logo once, then print the returned [StoredGraphic.command]
+  /// in every ticket instead of the bitmap
+  static Future<StoredGraphic> storeGraphic({
+    required String address,
+    required String key,
+    required Uint8List imageBytes,
+    required int dotsPerLine,
+    bool nonVolatile = true,
+    ImageDither dither = const ImageDither(),
+    bool force = false,
+    bool keepConnected = false,
+    int maxBufferSize = 512,
+    int delayTime = 0,
+  }) {
+    return FlutterBluetoothPrinterPlatform.instance.storeGraphic(
+      address: address,
+      key: key,
+      imageBytes: imageBytes,
+      dotsPerLine: dotsPerLine,
+      nonVolatile: nonVolatile,
+      dither: dither,
+      force: force,
+      keepConnected: keepConnected,
+      maxBufferSize: maxBufferSize,
+      delayTime: delayTime,
+    );
+  }
+
+  static Future<List<Map<String, dynamic>>> getStoredGraphics(
+      String address) {
+    return FlutterBluetoothPrinterPlatform.instance.getStoredGraphics(address);
+  }
+
+  static Future<bool> forgetStoredGraphics(String address) {
+    return FlutterBluetoothPrinterPlatform.instance
+        .forgetStoredGraphics(address);
+  }
+
+  static Future<bool> setPrinterCapabilities(
+    String address, {
+    bool cropRaster = false,
+  }) {
+    return FlutterBluetoothPrinterPlatform.instance.setPrinterCapabilities(
+      address,
+      cropRaster: cropRaster,
+    );
+  }
+
+  static Future<Map<String, dynamic>> getPrinterCapabilities(
+      String address) {
+    return FlutterBluetoothPrinterPlatform.instance
+        .getPrinterCapabilities(address);
+  }
+
+  static Future<bool> registerFragment(
+    String id,
+    Uint8List bytes, {
+    bool template = true,
+  }) {
+    return FlutterBluetoothPrinterPlatform.instance.registerFragment(
+      id,
+      bytes,
+      template: template,
+    );
+  }
+
+  static Future<int> registerImageFragment(
+    String id, {
+    required Uint8List imageBytes,
+    required int dotsPerLine,
+    bool useImageRaster = true,
+    bool useGraphics = false,
+    bool cropRaster = false,
+    int dpi = 203,
+    ImageDither dither = const ImageDither(),
+  }) {
+    return FlutterBluetoothPrinterPlatform.instance.registerImageFragment(
+      id,
+      imageBytes: imageBytes,
+      dotsPerLine: dotsPerLine,
+      useImageRaster: useImageRaster,
+      useGraphics: useGraphics,
+      cropRaster: cropRaster,
+      dpi: dpi,
+      dither: dither,
+    );
+  }
+
+  static Future<bool> removeFragment(String id) {
+    return FlutterBluetoothPrinterPlatform.instance.removeFragment(id);
+  }
+
+  static Future<bool> setFragmentCacheBudget(int budgetBytes) {
+    return FlutterBluetoothPrinterPlatform.instance
+        .setFragmentCacheBudget(budgetBytes);
+  }
+
+  static Future<Map<String, dynamic>> getFragmentCacheStats() {
+    return FlutterBluetoothPrinterPlatform.instance.getFragmentCacheStats();
+  }
+
+  static Future<Uint8List> compileFragments(
+    List<ReceiptPart> parts, {
+    Map<String, Object> variables = const {},
+    String charset = 'ISO-8859-1',
+  }) {
+    return FlutterBluetoothPrinterPlatform.instance.compileFragments(
+      parts,
+      variables: variables,
+      charset: charset,
+    );
+  }
+
+  /// prints cached fragments with [variables] filled in, e.g. a logo and
+  /// header registered once plus the lines of this order as bytes
+  static Future<bool> printFragments({
+    required String address,
+    required List<ReceiptPart> parts,
+    Map<String, Object> variables = const {},
+    String charset = 'ISO-8859-1',
+    bool keepConnected = false,
+    int maxBufferSize = 512,
+    int delayTime = 0,
+  }) {
+    return FlutterBluetoothPrinterPlatform.instance.printFragments(
+      address: address,
+      parts: parts,
+      variables: variables,
+      charset: charset,
+      keepConnected: keepConnected,
+      maxBufferSize: maxBufferSize,
+      delayTime: delayTime,
+    );
+  }
+
+  static Future<Map<String, dynamic>> getMetrics() async {
+    return FlutterBluetoothPrinterPlatform.instance.getMetrics();
+  }
+
+  static Future<bool> resetMetrics() async {
+    return FlutterBluetoothPrinterPlatform.instance.resetMetrics();
+  }
+
+  static Stream<Map<String, dynamic>> get jobMetrics =>
+      FlutterBluetoothPrinterPlatform.instance.jobMetrics;
+
+  static Future<Map<String, dynamic>> getRasterStats() async {
+    return FlutterBluetoothPrinterPlatform.instance.getRasterStats();
+  }
+
+  static Future<Map<String, dynamic>> getReceiveStats() async {
+    return FlutterBluetoothPrinterPlatform.instance.getReceiveStats();
+  }
+
+  static Future<bool> configureReadChannel({
+    Duration window = const Duration(milliseconds: 16),
+    int windowBytes = 4096,
+    int maxPendingBytes = 65536,
+    ReadOverflow overflow = ReadOverflow.dropOldest,
+  }) async {
+    return FlutterBluetoothPrinterPlatform.instance.configureReadChannel(
+      window: window,
+      windowBytes: windowBytes,
+      maxPendingBytes: maxPendingBytes,
+      overflow: overflow,
+    );
+  }
 }
@@ -110,6 +110,18 @@ class Generator {
     ];
   }
 
+  /// prints a graphic stored with `FlutterBluetoothPrinter.storeGraphic`,
+  /// `GS ( L` fn 69 (NV) or fn 85 (download)
+  List<int> storedGraphic(String key, {bool nonVolatile = true}) {
+    return <int>[
+      ...cRasterImg.codeUnits,
+      6, 0, // pL pH
+      48, nonVolatile ? 69 : 85, // m fn
+      ...key.codeUnits, // kc1 kc2
+      1, 1, // x y, normal size
+    ];
+  }
+
   /// Image rasterization
   List<int> _toRasterFormat(img.Image imgSrc) {
     final img.Image image = img.Image.from(imgSrc); // make a copy
@@ -21,8 +21,24 @@ class MethodChannelBluetoothPrinter extends FlutterBluetoothPrinterPlatform {
   final channel = const MethodChannel('maseka.dev/flutter_bluetooth_printer');
   final discoveryChannel =
       const EventChannel('maseka.dev/flutter_bluetooth_printer/discovery');
+  final metricsChannel =
+      const EventChannel('maseka.dev/flutter_bluetooth_printer/metrics');
 
-  ProgressCallback? _progressCallback;
+  /// payloads go through [BinaryCodec] so they reach the writer without being
+  /// re-encoded by the standard codec
+  final writeChannel = const BasicMessageChannel<ByteData?>(
+    'maseka.dev/flutter_bluetooth_printer/write',
+    BinaryCodec(),
+  );
+
+  final _progressCallbacks = <String, ProgressCallback>{};
+  final _printerStatus = StreamController<PrinterStatusEvent>.broadcast();
+
+  @override
+  Stream<PrinterStatusEvent> get printerStatus {
+    _init();
+    return _printerStatus.stream;
+  }
 
   bool _isInitialized = false;
   void _init() {
@@ -37,9 +53,14 @@ class MethodChannelBluetoothPrinter extends FlutterBluetoothPrinterPlatform {
           break;
 
         case 'onPrintingProgress':
+          final address = call.arguments['address'] as String?;
           final total = call.arguments['total'] as int;
           final progress = call.arguments['progress'] as int;
-          _progressCallback?.call(total, progress);
+          _progressCallbacks[address]?.call(total, progress);
+          break;
+
+        case 'onPrinterStatus':
+          _printerStatus.add(PrinterStatusEvent.fromMap(call.arguments));
           break;
       }
       return true;
@@ -98,11 +119,16 @@ class MethodChannelBluetoothPrinter extends FlutterBluetoothPrinterPlatform {
         }
 
         if (state == BluetoothState.permitted) {
-          return BluetoothDevice(
-            address: data['address'],
-            name: data['name'],
-            type: data['type'],
-          );
+          final devices = data['devices'];
+          if (devices is List) {
+            return BluetoothDeviceBatch(
+              devices: devices
+                  .map((e) => BluetoothDevice.fromMap(e as Map))
+                  .toList(),
+            );
+          }
+
+          return BluetoothDevice.fromMap(data);
         }
 
         return UnknownState();
@@ -113,7 +139,7 @@ class MethodChannelBluetoothPrinter extends FlutterBluetoothPrinterPlatform {
   @override
   Stream<DiscoveryState> get discovery => _discovery();
 
-  bool _isBusy = false;
+  final _busyAddresses = <String>{};
 
   @override
   Future<bool> write({
@@ -122,26 +148,51 @@ class MethodChannelBluetoothPrinter extends FlutterBluetoothPrinterPlatform {
     bool keepConnected = false,
     required int maxBufferSize,
     required int delayTime,
+    bool pipelined = false,
     ProgressCallback? onProgress,
   }) async {
+    if (_busyAddresses.contains(address)) {
+      return false;
+    }
+
     try {
-      if (_isBusy) {
-        throw busyDeviceException;
+      _busyAddresses.add(address);
+      _init();
+
+      if (onProgress != null) {
+        _progressCallbacks[address] = onProgress;
       }
 
-      _isBusy = true;
-      _init();
+      // u8 version, u8 flags, u16 address length, u32 max buffer size,
+      // u32 delay time, address, payload; framing copies [data] once, the
+      // engine hands Android another copy that is written from in place
+      final addressBytes = utf8.encode(address);
+      final headerLength = 12 + addressBytes.length;
+      final message = Uint8List(headerLength + data.length);
+      ByteData.sublistView(message)
+        ..setUint8(0, 1)
+        ..setUint8(1, (keepConnected ? 1 : 0) | (pipelined ? 2 : 0))
+        ..setUint16(2, addressBytes.length, Endian.little)
+        ..setUint32(4, maxBufferSize, Endian.little)
+        ..setUint32(8, delayTime, Endian.little);
+      message.setRange(12, headerLength, addressBytes);
+      message.setRange(headerLength, message.length, data);
+
+      final reply = await writeChannel.send(ByteData.sublistView(message));
+      if (reply != null) {
+        return reply.lengthInBytes > 0 && reply.getUint8(0) == 1;
+      }
 
-      _progressCallback = onProgress;
+      // no binary handler on this platform
       final res = await channel.invokeMethod('write', {
         'address': address,
         'data': data,
         'keep_connected': keepConnected,
         'delay_time': delayTime,
         'max_buffer_size': maxBufferSize,
+        'pipelined': pipelined,
       });
 
-      _progressCallback = null;
       if (res is bool) {
         return res;
       }
@@ -150,10 +201,176 @@ class MethodChannelBluetoothPrinter extends FlutterBluetoothPrinterPlatform {
     } catch (e) {
       return false;
     } finally {
-      _isBusy = false;
+      _progressCallbacks.remove(address);
+      _busyAddresses.remove(address);
     }
   }
 
+  @override
+  Future<MultiWriteResult> writeMulti({
+    required List<String> addresses,
+    required Uint8List data,
+    bool keepConnected = false,
+    required int maxBufferSize,
+    required int delayTime,
+  }) async {
+    _init();
+    final res = await channel.invokeMapMethod<String, dynamic>('writeMulti', {
+      'addresses': addresses,
+      'data': data,
+      'keep_connected': keepConnected,
+      'max_buffer_size': maxBufferSize,
+      'delay_time': delayTime,
+    });
+
+    final printers = (res?['printers'] as Map?) ?? {};
+    return MultiWriteResult(
+      printers: printers.map(
+        (key, value) => MapEntry(
+          key as String,
+          PrinterWriteResult.fromMap(value as Map),
+        ),
+      ),
+      total: Duration(milliseconds: res?['totalMs'] ?? 0),
+    );
+  }
+
+  @override
+  Future<int> enqueueJob({
+    required String address,
+    required Uint8List data,
+    required int maxBufferSize,
+    required int delayTime,
+  }) async {
+    final res = await channel.invokeMethod('enqueueJob', {
+      'address': address,
+      'data': data,
+      'delay_time': delayTime,
+      'max_buffer_size': maxBufferSize,
+    });
+
+    return res as int;
+  }
+
+  @override
+  Future<PrintJobStatus?> jobStatus(int id) async {
+    final res = await channel.invokeMapMethod<String, dynamic>('jobStatus', {
+      'id': id,
+    });
+
+    if (res == null) {
+      return null;
+    }
+
+    return PrintJobStatus(
+      id: res['id'],
+      address: res['address'],
+      state: PrintJobState.values.byName(res['status']),
+      error: res['error'],
+    );
+  }
+
+  @override
+  Future<List<PrintJobStatus>> jobs() async {
+    final res = await channel.invokeListMethod<Map>('getJobs');
+    return (res ?? const [])
+        .map((e) => PrintJobStatus(
+              id: e['id'],
+              address: e['address'],
+              state: PrintJobState.values.byName(e['status']),
+              error: e['error'],
+            ))
+        .toList();
+  }
+
+  @override
+  Future<bool> acknowledgeJob(int id) async {
+    final res = await channel.invokeMethod<bool>('acknowledgeJob', {
+      'id': id,
+    });
+    return res ?? false;
+  }
+
+  @override
+  Future<bool> printImage({
+    required String address,
+    required Uint8List imageBytes,
+    required int dotsPerLine,
+    bool useImageRaster = true,
+    bool useGraphics = false,
+    bool cropRaster = false,
+    int dpi = 203,
+    ImageDither dither = const ImageDither(),
+    int bandHeight = 256,
+    bool keepConnected = false,
+    required int maxBufferSize,
+    required int delayTime,
+    bool pipelined = false,
+    ProgressCallback? onProgress,
+  }) async {
+    if (_busyAddresses.contains(address)) {
+      return false;
+    }
+
+    try {
+      _busyAddresses.add(address);
+      _init();
+
+      if (onProgress != null) {
+        _progressCallbacks[address] = onProgress;
+      }
+      final res = await channel.invokeMethod('printImage', {
+        'address': address,
+        'bytes': imageBytes,
+        'dotsPerLine': dotsPerLine,
+        'useImageRaster': useImageRaster,
+        'graphics': useGraphics,
+        'cropRaster': cropRaster,
+        'dpi': dpi,
+        ...dither._toMap(),
+        'band_height': bandHeight,
+        'keep_connected': keepConnected,
+        'delay_time': delayTime,
+        'max_buffer_size': maxBufferSize,
+        'pipelined': pipelined,
+      });
+
+      if (res is bool) {
+        return res;
+      }
+
+      return false;
+    } catch (e) {
+      return false;
+    } finally {
+      _progressCallbacks.remove(address);
+      _busyAddresses.remove(address);
+    }
+  }
+
+  @override
+  Future<Uint8List> encodeImage({
+    required Uint8List bytes,
+    required int dotsPerLine,
+    bool useImageRaster = true,
+    bool useGraphics = false,
+    bool cropRaster = false,
+    int dpi = 203,
+    ImageDither dither = const ImageDither(),
+  }) async {
+    final res = await channel.invokeMethod<Uint8List>('encodeImage', {
+      'bytes': bytes,
+      'dotsPerLine': dotsPerLine,
+      'useImageRaster': useImageRaster,
+      'graphics': useGraphics,
+      'cropRaster': cropRaster,
+      'dpi': dpi,
+      ...dither._toMap(),
+    });
+
+    return res!;
+  }
+
   @override
   Future<bool> disconnect(String address) async {
     final res = await channel.invokeMethod('disconnect', {
@@ -167,19 +384,44 @@ class MethodChannelBluetoothPrinter extends FlutterBluetoothPrinterPlatform {
     return false;
   }
 
+  bool _isDevice(DiscoveryState state, String address) {
+    if (state is BluetoothDevice) {
+      return state.address == address;
+    }
+
+    if (state is BluetoothDeviceBatch) {
+      return state.devices.any((e) => e.address == address);
+    }
+
+    return false;
+  }
+
+  Future<bool> _isKnown(String address) async {
+    final known =
+        await getDiscoveredDevices().catchError((_) => <BluetoothDevice>[]);
+    return known.any((e) => e.address == address);
+  }
+
   @override
-  Future<bool> connect(String address) async {
+  Future<bool> connect(
+    String address, {
+    ConnectStrategy? strategy,
+  }) async {
+    final ownsBusy = _busyAddresses.add(address);
     try {
-      _isBusy = true;
       _init();
 
-      await discovery
-          .firstWhere((element) =>
-              element is BluetoothDevice && element.address == address)
-          .timeout(const Duration(seconds: 10));
+      // printers already seen don't have to wait for a scan to find them,
+      // network printers never show up in one
+      if (!address.startsWith('tcp://') && !await _isKnown(address)) {
+        await discovery
+            .firstWhere((element) => _isDevice(element, address))
+            .timeout(const Duration(seconds: 10));
+      }
 
       final res = await channel.invokeMethod('connect', {
         'address': address,
+        if (strategy != null) 'strategy': strategy.name,
       });
 
       if (res is bool) {
@@ -190,8 +432,48 @@ class MethodChannelBluetoothPrinter extends FlutterBluetoothPrinterPlatform {
     } catch (e) {
       return false;
     } finally {
-      _isBusy = false;
+      if (ownsBusy) {
+        _busyAddresses.remove(address);
+      }
+    }
+  }
+
+  @override
+  Future<bool> setPreferredPrinters(List<String> addresses) async {
+    final res = await channel.invokeMethod('setPreferredPrinters', {
+      'addresses': addresses,
+    });
+
+    if (res is bool) {
+      return res;
     }
+
+    return false;
+  }
+
+  @override
+  Future<List<String>> getPreferredPrinters() async {
+    final res = await channel.invokeListMethod<String>('getPreferredPrinters');
+    return res ?? [];
+  }
+
+  @override
+  Future<Map<String, dynamic>> getConnectAttempts(String address) async {
+    final res = await channel.invokeMapMethod<String, dynamic>(
+      'getConnectAttempts',
+      {'address': address},
+    );
+    return res ?? {};
+  }
+
+  @override
+  Future<List<BluetoothDevice>> getDiscoveredDevices() async {
+    final res = await channel.invokeListMethod<Map>('getDiscoveredDevices');
+    if (res == null) {
+      return [];
+    }
+
+    return res.map((e) => BluetoothDevice.fromMap(e)).toList();
   }
 
   @override
@@ -200,4 +482,291 @@ class MethodChannelBluetoothPrinter extends FlutterBluetoothPrinterPlatform {
     final state = _intToState(result);
     return state;
   }
+
+  @override
+  Future<int?> readStatus(
+    String address, {
+    int type = 1,
+    Duration timeout = const Duration(seconds: 2),
+  }) async {
+    final res = await channel.invokeMethod('readStatus', {
+      'address': address,
+      'type': type,
+      'timeout': timeout.inMilliseconds,
+    });
+
+    if (res is int) {
+      return res;
+    }
+
+    return null;
+  }
+
+  @override
+  Future<Map<String, dynamic>> getExecutorMetrics() async {
+    final res = await channel.invokeMapMethod<String, dynamic>(
+      'getExecutorMetrics',
+    );
+    return res ?? {};
+  }
+
+  @override
+  Future<Map<String, dynamic>> getConnectionPoolStats() async {
+    final res = await channel.invokeMapMethod<String, dynamic>(
+      'getConnectionPoolStats',
+    );
+    return res ?? {};
+  }
+
+  @override
+  Future<StoredGraphic> storeGraphic({
+    required String address,
+    required String key,
+    required Uint8List imageBytes,
+    required int dotsPerLine,
+    bool nonVolatile = true,
+    ImageDither dither = const ImageDither(),
+    bool force = false,
+    bool keepConnected = false,
+    required int maxBufferSize,
+    required int delayTime,
+  }) async {
+    _init();
+    final res = await channel.invokeMapMethod<String, dynamic>('storeGraphic', {
+      'address': address,
+      'key': key,
+      'bytes': imageBytes,
+      'dotsPerLine': dotsPerLine,
+      'non_volatile': nonVolatile,
+      ...dither._toMap(),
+      'force': force,
+      'keep_connected': keepConnected,
+      'max_buffer_size': maxBufferSize,
+      'delay_time': delayTime,
+    });
+
+    return StoredGraphic(
+      uploaded: res!['uploaded'] == true,
+      bytes: res['bytes'] ?? 0,
+      command: res['command'] as Uint8List,
+    );
+  }
+
+  @override
+  Future<List<Map<String, dynamic>>> getStoredGraphics(String address) async {
+    final res = await channel.invokeListMethod<Map>('getStoredGraphics', {
+      'address': address,
+    });
+    return (res ?? []).map((e) => Map<String, dynamic>.from(e)).toList();
+  }
+
+  @override
+  Future<bool> forgetStoredGraphics(String address) async {
+    final res = await channel.invokeMethod('forgetStoredGraphics', {
+      'address': address,
+    });
+    return res == true;
+  }
+
+  @override
+  Future<bool> setPrinterCapabilities(
+    String address, {
+    bool cropRaster = false,
+  }) async {
+    final res = await channel.invokeMethod('setPrinterCapabilities', {
+      'address': address,
+      'cropRaster': cropRaster,
+    });
+    return res == true;
+  }
+
+  @override
+  Future<Map<String, dynamic>> getPrinterCapabilities(String address) async {
+    final res = await channel.invokeMapMethod<String, dynamic>(
+      'getPrinterCapabilities',
+      {'address': address},
+    );
+    return res ?? {};
+  }
+
+  @override
+  Future<bool> registerFragment(
+    String id,
+    Uint8List bytes, {
+    bool template = true,
+  }) async {
+    final res = await channel.invokeMethod('registerFragment', {
+      'id': id,
+      'bytes': bytes,
+      'template': template,
+    });
+
+    if (res is bool) {
+      return res;
+    }
+
+    return false;
+  }
+
+  @override
+  Future<int> registerImageFragment(
+    String id, {
+    required Uint8List imageBytes,
+    required int dotsPerLine,
+    bool useImageRaster = true,
+    bool useGraphics = false,
+    bool cropRaster = false,
+    int dpi = 203,
+    ImageDither dither = const ImageDither(),
+  }) async {
+    final res = await channel.invokeMethod('registerImageFragment', {
+      'id': id,
+      'bytes': imageBytes,
+      'dotsPerLine': dotsPerLine,
+      'useImageRaster': useImageRaster,
+      'graphics': useGraphics,
+      'cropRaster': cropRaster,
+      'dpi': dpi,
+      ...dither._toMap(),
+    });
+    return res as int;
+  }
+
+  @override
+  Future<bool> removeFragment(String id) async {
+    final res = await channel.invokeMethod('removeFragment', {'id': id});
+    return res == true;
+  }
+
+  @override
+  Future<bool> setFragmentCacheBudget(int budgetBytes) async {
+    final res = await channel.invokeMethod('setFragmentCacheBudget', {
+      'budget_bytes': budgetBytes,
+    });
+    return res == true;
+  }
+
+  @override
+  Future<Map<String, dynamic>> getFragmentCacheStats() async {
+    final res = await channel.invokeMapMethod<String, dynamic>(
+      'getFragmentCacheStats',
+    );
+    return res ?? {};
+  }
+
+  Map<String, dynamic> _fragmentArgs(
+    List<ReceiptPart> parts,
+    Map<String, Object> variables,
+    String charset,
+  ) {
+    return {
+      'parts': parts.map((e) => e._encoded).toList(),
+      'variables': variables,
+      'charset': charset,
+    };
+  }
+
+  @override
+  Future<Uint8List> compileFragments(
+    List<ReceiptPart> parts, {
+    Map<String, Object> variables = const {},
+    String charset = 'ISO-8859-1',
+  }) async {
+    try {
+      final res = await channel.invokeMethod<Uint8List>(
+        'compileFragments',
+        _fragmentArgs(parts, variables, charset),
+      );
+      return res!;
+    } on PlatformException catch (e) {
+      if (e.code == 'fragment_missing') {
+        throw MissingFragmentException(e.details as String);
+      }
+      rethrow;
+    }
+  }
+
+  @override
+  Future<bool> printFragments({
+    required String address,
+    required List<ReceiptPart> parts,
+    Map<String, Object> variables = const {},
+    String charset = 'ISO-8859-1',
+    bool keepConnected = false,
+    required int maxBufferSize,
+    required int delayTime,
+  }) async {
+    _init();
+    try {
+      final res = await channel.invokeMethod('printFragments', {
+        ..._fragmentArgs(parts, variables, charset),
+        'address': address,
+        'keep_connected': keepConnected,
+        'max_buffer_size': maxBufferSize,
+        'delay_time': delayTime,
+      });
+      return res == true;
+    } on PlatformException catch (e) {
+      if (e.code == 'fragment_missing') {
+        throw MissingFragmentException(e.details as String);
+      }
+      rethrow;
+    }
+  }
+
+  @override
+  Future<Map<String, dynamic>> getMetrics() async {
+    final res = await channel.invokeMapMethod<String, dynamic>('getMetrics');
+    return res ?? {};
+  }
+
+  @override
+  Future<bool> resetMetrics() async {
+    final res = await channel.invokeMethod('resetMetrics');
+    return res == true;
+  }
+
+  @override
+  Stream<Map<String, dynamic>> get jobMetrics => metricsChannel
+      .receiveBroadcastStream()
+      .map((event) => Map<String, dynamic>.from(event as Map));
+
+  @override
+  Future<Map<String, dynamic>> getRasterStats() async {
+    final res = await channel.invokeMapMethod<String, dynamic>(
+      'getRasterStats',
+    );
+    return res ?? {};
+  }
+
+  @override
+  Future<Map<String, dynamic>> getReceiveStats() async {
+    final res = await channel.invokeMapMethod<String, dynamic>(
+      'getReceiveStats',
+    );
+    return res ?? {};
+  }
+
+  @override
+  Future<bool> configureReadChannel({
+    Duration window = const Duration(milliseconds: 16),
+    int windowBytes = 4096,
+    int maxPendingBytes = 65536,
+    ReadOverflow overflow = ReadOverflow.dropOldest,
+  }) async {
+    final res = await channel.invokeMethod('configureReadChannel', {
+      'window_ms': window.inMilliseconds,
+      'window_bytes': windowBytes,
+      'max_pending_bytes': maxPendingBytes,
+      'overflow': overflow == ReadOverflow.dropOldest
+          ? 'drop_oldest'
+          : 'drop_newest',
+    });
+
+    if (res is bool) {
+      return res;
+    }
+
+    return false;
+  }
 }
@@ -22,7 +22,7 @@ class ReceiptController with ChangeNotifier {
     int addFeeds = 0,
     bool keepConnected = false,
     int maxBufferSize = 512,
-    int delayTime = 120,
+    int delayTime = 0,
   }) {
     return _state.print(
       address: address,
@@ -153,7 +153,7 @@ class ReceiptState extends State<Receipt> {
     int addFeeds = 0,
     bool keepConnected = false,
     int maxBufferSize = 512,
-    int delayTime = 120,
+    int delayTime = 0,
   }) async {
     final RenderRepaintBoundary boundary =
         _localKey.currentContext!.findRenderObject() as RenderRepaintBoundary;